@@ -0,0 +1,89 @@
+package io.github.drakonkinst.datatables;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+// Keeps every table received from a server keyed by content hash, for as long as the client
+// is running. Tables are shared across servers and sessions, so rejoining or reloading only
+// downloads tables whose content actually changed.
+public class DataTableSyncCache {
+
+    private static final int MAX_CACHED_TABLES = 4096;
+
+    private final Long2ObjectMap<DataTable> tablesByHash = new Long2ObjectOpenHashMap<>();
+    @Nullable
+    private SyncManifestPayload pendingManifest = null;
+
+    public void onManifest(SyncManifestPayload payload) {
+        this.pendingManifest = payload;
+        List<Identifier> missing = new ArrayList<>();
+        for (Map.Entry<Identifier, Long> entry : payload.contentHashes().entrySet()) {
+            if (!this.tablesByHash.containsKey(entry.getValue().longValue())) {
+                missing.add(entry.getKey());
+            }
+        }
+
+        if (missing.isEmpty()) {
+            this.tryApply();
+        } else {
+            ClientPlayNetworking.send(new SyncRequestPayload(missing));
+        }
+    }
+
+    public void onTables(SyncPayload payload) {
+        for (DataTable dataTable : payload.dataTables().values()) {
+            this.tablesByHash.put(dataTable.getContentHash(), dataTable);
+        }
+        this.tryApply();
+    }
+
+    private void tryApply() {
+        SyncManifestPayload payload = this.pendingManifest;
+        if (payload == null) {
+            return;
+        }
+        Map<Identifier, Long> manifest = payload.contentHashes();
+
+        Map<Identifier, DataTable> changed = new HashMap<>();
+        for (Map.Entry<Identifier, Long> entry : manifest.entrySet()) {
+            long contentHash = entry.getValue();
+            DataTable dataTable = this.tablesByHash.get(contentHash);
+            if (dataTable == null) {
+                // The server reloaded since sending this manifest, so wait for the next one
+                return;
+            }
+            Optional<DataTable> current = DataTables.getOptional(entry.getKey());
+            if (current.isEmpty() || current.get().getContentHash() != contentHash) {
+                changed.put(entry.getKey(), dataTable);
+            }
+        }
+
+        Set<Identifier> removed = new HashSet<>(DataTables.getDataTableIds());
+        removed.removeAll(manifest.keySet());
+        DataTables.applySyncDelta(changed, removed, payload.columns());
+        this.pendingManifest = null;
+
+        if (this.tablesByHash.size() > MAX_CACHED_TABLES) {
+            LongSet inUse = new LongOpenHashSet(manifest.values());
+            LongIterator iterator = this.tablesByHash.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (!inUse.contains(iterator.nextLong())) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
@@ -5,10 +5,14 @@ import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 
 public class DataTablesClient implements ClientModInitializer {
 
+    private static final DataTableSyncCache SYNC_CACHE = new DataTableSyncCache();
+
     @Override
     public void onInitializeClient() {
+        ClientPlayNetworking.registerGlobalReceiver(SyncManifestPayload.ID,
+                ((payload, context) -> SYNC_CACHE.onManifest(payload)));
         ClientPlayNetworking.registerGlobalReceiver(SyncPayload.ID, ((payload, context) -> {
-            DataTables.syncDataTables(payload.dataTables());
+            SYNC_CACHE.onTables(payload);
         }));
     }
-}
\ No newline at end of file
+}
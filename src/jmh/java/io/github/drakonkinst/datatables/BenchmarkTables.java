@@ -0,0 +1,52 @@
+package io.github.drakonkinst.datatables;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.registry.DefaultedRegistry;
+import net.minecraft.util.Identifier;
+
+// Builds tables for benchmarks without loading any data packs. Typed tables use the vanilla
+// registries, which are available headless after bootstrapping.
+final class BenchmarkTables {
+
+    static final String NAMESPACE = "bench";
+    private static boolean bootstrapped = false;
+
+    static synchronized void bootstrap() {
+        if (!bootstrapped) {
+            SharedConstants.createGameVersion();
+            Bootstrap.initialize();
+            bootstrapped = true;
+        }
+    }
+
+    static Identifier id(String prefix, int index) {
+        return Identifier.of(NAMESPACE, prefix + "_" + index);
+    }
+
+    // Gives every element with an even raw ID its own entry, or for misc tables, the given number
+    // of made-up identifiers
+    static DataTable create(DataTableType type, int miscEntries) {
+        Object2IntMap<Identifier> elementEntryTable = new Object2IntOpenHashMap<>();
+        DefaultedRegistry<?> registry = type.getRegistry();
+        if (registry == null) {
+            for (int i = 0; i < miscEntries; ++i) {
+                elementEntryTable.put(id("element", i), i);
+            }
+        } else {
+            for (int rawId = 0; rawId < registry.size(); rawId += 2) {
+                elementEntryTable.put(getId(registry, rawId), rawId);
+            }
+        }
+        return new DataTable(type, -1, elementEntryTable, new Object2IntOpenHashMap<>())
+                .compile();
+    }
+
+    static <T> Identifier getId(DefaultedRegistry<T> registry, int rawId) {
+        return registry.getId(registry.get(rawId));
+    }
+
+    private BenchmarkTables() {}
+}
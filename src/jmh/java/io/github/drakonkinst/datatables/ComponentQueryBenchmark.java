@@ -0,0 +1,80 @@
+package io.github.drakonkinst.datatables;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMaps;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.component.DataComponentTypes;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.registry.BuiltinRegistries;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.text.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Queries item stacks against component entries. The memo is only worth keeping if a memoized
+// query of a changed stack, which hashes its component changes, beats testing the entries
+// directly, so both are measured on the same stack. Stacks without changes skip both.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentQueryBenchmark {
+
+    private DataTable table;
+    private ItemComponentMatcher matcher;
+    private ItemStack defaultStack;
+    private ItemStack changedStack;
+    private int rawId;
+
+    @Setup
+    public void setup() {
+        BenchmarkTables.bootstrap();
+        RegistryWrapper.WrapperLookup registries = BuiltinRegistries.createWrapperLookup();
+        Object2IntMap<String> componentEntries = new Object2IntOpenHashMap<>();
+        componentEntries.put("minecraft:diamond_sword[damage=5]", 1);
+        componentEntries.put("minecraft:diamond_sword[damage=5,repair_cost=2]", 2);
+        componentEntries.put("#minecraft:swords[repair_cost=1]", 3);
+        componentEntries.put("*[custom_name='Named']", 4);
+        table = new DataTable(DataTableType.ITEM, -1, new Object2IntOpenHashMap<>(),
+                new Object2IntOpenHashMap<>(), ConflictPolicy.FIRST, List.of(),
+                Object2IntMaps.emptyMap(), componentEntries, CachePolicy.NONE,
+                CachePolicy.DEFAULT_SIZE, null).compile(registries, id -> null);
+        matcher = ItemComponentMatcher.compile(componentEntries, registries);
+
+        defaultStack = new ItemStack(Items.DIAMOND_SWORD);
+        changedStack = new ItemStack(Items.DIAMOND_SWORD);
+        changedStack.set(DataComponentTypes.DAMAGE, 5);
+        changedStack.set(DataComponentTypes.REPAIR_COST, 2);
+        changedStack.set(DataComponentTypes.CUSTOM_NAME, Text.literal("Sword"));
+        rawId = Registries.ITEM.getRawId(Items.DIAMOND_SWORD);
+    }
+
+    @Benchmark
+    public int queryDefaultStack() {
+        return table.query(defaultStack);
+    }
+
+    @Benchmark
+    public int queryChangedStackMemoized() {
+        return table.query(changedStack);
+    }
+
+    @Benchmark
+    public int queryChangedStackUncached() {
+        return matcher.matchUncached(changedStack, rawId, -1);
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.drakonkinst.datatables;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.state.property.Properties;
+import net.minecraft.util.Identifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Queries one block table from several threads while another thread keeps recompiling and
+// publishing new versions of it, like a reload in the middle of a tick. Every version gives every
+// block and block state the same value, so a query that mixes a block value from one version with
+// a block state value from another fails the benchmark instead of reporting a result.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentQueryBenchmark {
+
+    private static final Identifier TABLE_ID = BenchmarkTables.id("table", 0);
+    private static final int VERSIONS = 2;
+
+    private final List<Map<Identifier, DataTable>> versions = new ArrayList<>(VERSIONS);
+    private DataTableRegistry registry;
+    private DataTableHandle handle;
+    private BlockState litFurnace;
+    // Only touched by the publishing thread
+    private int nextVersion = 0;
+
+    @Setup
+    public void setup() {
+        BenchmarkTables.bootstrap();
+        for (int version = 0; version < VERSIONS; ++version) {
+            Object2IntMap<String> stateEntryTable = new Object2IntOpenHashMap<>();
+            stateEntryTable.put("minecraft:furnace[lit=true]", version);
+            versions.add(Map.of(TABLE_ID,
+                    new DataTable(DataTableType.BLOCK, version, new Object2IntOpenHashMap<>(),
+                            new Object2IntOpenHashMap<>(), ConflictPolicy.FIRST, List.of(),
+                            stateEntryTable, CachePolicy.UNBOUNDED,
+                            CachePolicy.DEFAULT_SIZE)));
+        }
+        registry = new DataTableRegistry();
+        registry.replaceTables(versions.getFirst(), Map.of());
+        handle = registry.handle(TABLE_ID);
+        litFurnace = Blocks.FURNACE.getDefaultState().with(Properties.LIT, true);
+    }
+
+    @Benchmark
+    @Group("queryWhileRecompiling")
+    @GroupThreads(1)
+    public void recompile() {
+        registry.replaceTables(versions.get(nextVersion), Map.of());
+        nextVersion = (nextVersion + 1) % VERSIONS;
+    }
+
+    @Benchmark
+    @Group("queryWhileRecompiling")
+    @GroupThreads(3)
+    public int query() {
+        DataTable table = handle.get();
+        int blockValue = table.query(Blocks.STONE);
+        int stateValue = table.query(litFurnace);
+        if (blockValue != stateValue) {
+            throw new IllegalStateException(
+                    "Block value " + blockValue + " and block state value " + stateValue
+                            + " came from different versions of the same table");
+        }
+        return blockValue;
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.drakonkinst.datatables;
+
+import java.util.concurrent.TimeUnit;
+import net.minecraft.registry.DefaultedRegistry;
+import net.minecraft.util.Identifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Hits have their own entry, misses are registry elements without one, and unknown identifiers
+// are in neither the table nor the registry
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final int MISC_ENTRIES = 1000;
+
+    @Param({ "BLOCK", "ITEM", "ENTITY", "MISC" })
+    public DataTableType type;
+
+    private DataTable table;
+    private Identifier hitId;
+    private Identifier missId;
+    private Identifier unknownId;
+    private final int[] hitRawIds = { 0 };
+    private final int[] missRawIds = { 1 };
+    private final int[] results = new int[1];
+
+    @Setup
+    public void setup() {
+        BenchmarkTables.bootstrap();
+        table = BenchmarkTables.create(type, MISC_ENTRIES);
+        DefaultedRegistry<?> registry = type.getRegistry();
+        if (registry == null) {
+            hitId = BenchmarkTables.id("element", 0);
+            missId = BenchmarkTables.id("element", MISC_ENTRIES);
+        } else {
+            hitId = BenchmarkTables.getId(registry, 0);
+            missId = BenchmarkTables.getId(registry, 1);
+        }
+        unknownId = BenchmarkTables.id("unknown", 0);
+    }
+
+    @Benchmark
+    public int queryIdentifierHit() {
+        return table.query(hitId);
+    }
+
+    @Benchmark
+    public int queryIdentifierMiss() {
+        return table.query(missId);
+    }
+
+    @Benchmark
+    public int queryIdentifierUnknown() {
+        return table.query(unknownId);
+    }
+
+    @Benchmark
+    public int queryRawIdHit() {
+        table.queryRawIds(hitRawIds, results);
+        return results[0];
+    }
+
+    @Benchmark
+    public int queryRawIdMiss() {
+        table.queryRawIds(missRawIds, results);
+        return results[0];
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.drakonkinst.datatables;
+
+import io.github.drakonkinst.datatables.DataTableRegistry.DataTableEntry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.util.Identifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolverBenchmark {
+
+    private static final int ENTRIES_PER_TABLE = 10;
+    private static final int BASE_ENTRIES = 1000;
+
+    public enum Shape {
+        // Each table inherits from the one before it
+        DEEP,
+        // Every table inherits from one large base table
+        WIDE
+    }
+
+    @Param({ "DEEP", "WIDE" })
+    public Shape shape;
+
+    @Param({ "10", "100", "1000" })
+    public int size;
+
+    private final Map<Identifier, DataTableEntry> unresolved = new HashMap<>();
+
+    @Setup
+    public void setup() {
+        Identifier baseId = BenchmarkTables.id("table", 0);
+        unresolved.put(baseId, createEntry(null, 0, BASE_ENTRIES));
+        for (int i = 1; i < size; ++i) {
+            Identifier parentId = shape == Shape.DEEP ? BenchmarkTables.id("table", i - 1) : baseId;
+            unresolved.put(BenchmarkTables.id("table", i),
+                    createEntry(parentId, i * ENTRIES_PER_TABLE, ENTRIES_PER_TABLE));
+        }
+    }
+
+    private static DataTableEntry createEntry(Identifier parentId, int firstEntry, int entries) {
+        DataTableEntry.Builder builder = DataTableEntry.builder();
+        if (parentId != null) {
+            builder.parent(parentId);
+        }
+        for (int i = firstEntry; i < firstEntry + entries; ++i) {
+            builder.entry(BenchmarkTables.id("element", i), i);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public void resolve(Blackhole blackhole) {
+        new DataTableRegistry.Resolver(unresolved).resolve(id -> true,
+                (id, dataTable) -> blackhole.consume(dataTable));
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.drakonkinst.datatables;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.registry.DynamicRegistryManager;
+import net.minecraft.util.Identifier;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Compares the compact sync codec against encoding each table through its DFU codec, which is
+// how tables were synced originally
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncCodecBenchmark {
+
+    private static final int ELEMENTS_PER_TABLE = 20;
+    private static final int TAGS_PER_TABLE = 2;
+    // Tables draw from a shared pool, like real tables referencing the same blocks and items
+    private static final int ELEMENT_POOL_SIZE = 2000;
+    private static final PacketCodec<RegistryByteBuf, Map<Identifier, DataTable>> DFU_CODEC = PacketCodecs.map(
+            HashMap::new, Identifier.PACKET_CODEC, PacketCodecs.registryCodec(DataTable.CODEC));
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int tables;
+
+    private final Map<Identifier, DataTable> dataTables = new HashMap<>();
+    private RegistryByteBuf buf;
+    private byte[] encoded;
+    private byte[] dfuEncoded;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < tables; ++i) {
+            Object2IntMap<Identifier> elementEntryTable = new Object2IntOpenHashMap<>();
+            for (int j = 0; j < ELEMENTS_PER_TABLE; ++j) {
+                int element = (i * 7 + j * 13) % ELEMENT_POOL_SIZE;
+                elementEntryTable.put(BenchmarkTables.id("element", element), j - 5);
+            }
+            Object2IntMap<Identifier> tagEntryTable = new Object2IntOpenHashMap<>();
+            for (int j = 0; j < TAGS_PER_TABLE; ++j) {
+                tagEntryTable.put(BenchmarkTables.id("tag", (i + j) % 50), j);
+            }
+            dataTables.put(BenchmarkTables.id("table", i),
+                    new DataTable(DataTableType.MISC, 0, elementEntryTable, tagEntryTable));
+        }
+
+        buf = new RegistryByteBuf(Unpooled.buffer(), DynamicRegistryManager.EMPTY);
+        DataTablePacketCodecs.SYNC_TABLES.encode(buf, dataTables);
+        encoded = ByteBufUtil.getBytes(buf);
+        buf.clear();
+        DFU_CODEC.encode(buf, dataTables);
+        dfuEncoded = ByteBufUtil.getBytes(buf);
+        buf.clear();
+    }
+
+    @Benchmark
+    public int encode(PayloadSize payloadSize) {
+        buf.clear();
+        DataTablePacketCodecs.SYNC_TABLES.encode(buf, dataTables);
+        payloadSize.bytes = buf.writerIndex();
+        return buf.writerIndex();
+    }
+
+    @Benchmark
+    public Map<Identifier, DataTable> decode() {
+        return DataTablePacketCodecs.SYNC_TABLES.decode(Unpooled.wrappedBuffer(encoded));
+    }
+
+    @Benchmark
+    public int encodeDfu(PayloadSize payloadSize) {
+        buf.clear();
+        DFU_CODEC.encode(buf, dataTables);
+        payloadSize.bytes = buf.writerIndex();
+        return buf.writerIndex();
+    }
+
+    @Benchmark
+    public Map<Identifier, DataTable> decodeDfu() {
+        return DFU_CODEC.decode(new RegistryByteBuf(Unpooled.wrappedBuffer(dfuEncoded),
+                DynamicRegistryManager.EMPTY));
+    }
+
+    // Reported next to the encode benchmarks as the size of one payload. Event counters are
+    // reported as-is rather than as a rate, so assigning the size gives the size.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+
+        public long bytes;
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.drakonkinst.datatables;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.block.Block;
+import net.minecraft.block.Blocks;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.registry.tag.TagGroupLoader;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.util.Identifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Binds made-up block tags that each contain every block, so every element matches every tag
+// entry in the table and conflicts always have to be resolved
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagBenchmark {
+
+    @Param({ "1", "8", "32" })
+    public int tagsPerEntry;
+
+    @Param({ "FIRST", "MAX", "PRIORITY" })
+    public ConflictPolicy conflictPolicy;
+
+    private DataTable table;
+    private Identifier taggedId;
+
+    @Setup
+    public void setup() {
+        BenchmarkTables.bootstrap();
+        List<RegistryEntry<Block>> allBlocks = new ArrayList<>(
+                Registries.BLOCK.streamEntries().toList());
+        Map<TagKey<Block>, List<RegistryEntry<Block>>> tags = new HashMap<>();
+        Object2IntMap<Identifier> tagEntryTable = new Object2IntOpenHashMap<>();
+        List<Identifier> tagPriority = new ArrayList<>();
+        for (int i = 0; i < tagsPerEntry; ++i) {
+            Identifier tagId = BenchmarkTables.id("tag", i);
+            tags.put(TagKey.of(RegistryKeys.BLOCK, tagId), allBlocks);
+            tagEntryTable.put(tagId, i);
+            tagPriority.addFirst(tagId);
+        }
+        Registries.BLOCK.startTagReload(new TagGroupLoader.RegistryTags<>(RegistryKeys.BLOCK, tags))
+                .apply();
+
+        table = new DataTable(DataTableType.BLOCK, 0, new Object2IntOpenHashMap<>(),
+                tagEntryTable, conflictPolicy, tagPriority, new Object2IntOpenHashMap<>(),
+                CachePolicy.UNBOUNDED, CachePolicy.DEFAULT_SIZE).compile();
+        taggedId = Registries.BLOCK.getId(Blocks.STONE);
+    }
+
+    // Expands every tag entry, as happens for each table when tags load
+    @Benchmark
+    public DataTable compile() {
+        return table.compile();
+    }
+
+    @Benchmark
+    public int queryTagged() {
+        return table.query(Blocks.STONE);
+    }
+
+    @Benchmark
+    public int queryTaggedIdentifier() {
+        return table.query(taggedId);
+    }
+}
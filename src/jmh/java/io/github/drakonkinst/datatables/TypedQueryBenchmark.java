@@ -0,0 +1,98 @@
+package io.github.drakonkinst.datatables;
+
+import java.util.concurrent.TimeUnit;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.EntityType;
+import net.minecraft.item.Item;
+import net.minecraft.registry.Registries;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Queries through the typed overloads that mods call, which go from the element to its raw ID
+// instead of through an identifier. Hits have their own entry and misses are registry elements
+// without one, as in QueryBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypedQueryBenchmark {
+
+    private DataTable blockTable;
+    private DataTable itemTable;
+    private DataTable entityTable;
+    private Block hitBlock;
+    private Block missBlock;
+    private BlockState hitState;
+    private BlockState missState;
+    private Item hitItem;
+    private Item missItem;
+    private EntityType<?> hitEntityType;
+    private EntityType<?> missEntityType;
+
+    @Setup
+    public void setup() {
+        BenchmarkTables.bootstrap();
+        blockTable = BenchmarkTables.create(DataTableType.BLOCK, 0);
+        itemTable = BenchmarkTables.create(DataTableType.ITEM, 0);
+        entityTable = BenchmarkTables.create(DataTableType.ENTITY, 0);
+        hitBlock = Registries.BLOCK.get(0);
+        missBlock = Registries.BLOCK.get(1);
+        hitState = hitBlock.getDefaultState();
+        missState = missBlock.getDefaultState();
+        hitItem = Registries.ITEM.get(0);
+        missItem = Registries.ITEM.get(1);
+        hitEntityType = Registries.ENTITY_TYPE.get(0);
+        missEntityType = Registries.ENTITY_TYPE.get(1);
+    }
+
+    @Benchmark
+    public int queryBlockHit() {
+        return blockTable.query(hitBlock);
+    }
+
+    @Benchmark
+    public int queryBlockMiss() {
+        return blockTable.query(missBlock);
+    }
+
+    @Benchmark
+    public int queryBlockStateHit() {
+        return blockTable.query(hitState);
+    }
+
+    @Benchmark
+    public int queryBlockStateMiss() {
+        return blockTable.query(missState);
+    }
+
+    @Benchmark
+    public int queryItemHit() {
+        return itemTable.query(hitItem);
+    }
+
+    @Benchmark
+    public int queryItemMiss() {
+        return itemTable.query(missItem);
+    }
+
+    @Benchmark
+    public int queryEntityTypeHit() {
+        return entityTable.query(hitEntityType);
+    }
+
+    @Benchmark
+    public int queryEntityTypeMiss() {
+        return entityTable.query(missEntityType);
+    }
+}
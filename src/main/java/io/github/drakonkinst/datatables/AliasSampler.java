@@ -0,0 +1,92 @@
+package io.github.drakonkinst.datatables;
+
+import java.util.Optional;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.random.Random;
+
+// Picks keys at random with probability proportional to their value, using Vose's alias method.
+// Building is linear in the number of keys, and each draw takes one random column and one coin
+// flip regardless of how many keys there are. Keys with a value of 0 or less are never picked.
+final class AliasSampler {
+
+    private final int[] keys;
+    private final Identifier[] ids;
+    // Chance of keeping each column's own key rather than its alias
+    private final double[] probabilities;
+    private final int[] aliases;
+
+    AliasSampler(int[] values, Identifier[] ids) {
+        int count = 0;
+        long total = 0L;
+        for (int value : values) {
+            if (value > 0) {
+                ++count;
+                total += value;
+            }
+        }
+        this.keys = new int[count];
+        this.ids = ids;
+        this.probabilities = new double[count];
+        this.aliases = new int[count];
+        if (count == 0) {
+            return;
+        }
+
+        int column = 0;
+        for (int key = 0; key < values.length; ++key) {
+            if (values[key] > 0) {
+                keys[column] = key;
+                // Scaled so that the average column is exactly full
+                probabilities[column] = (double) values[key] * count / total;
+                ++column;
+            }
+        }
+
+        // Columns are split into underfull and overfull, and each underfull column is topped up
+        // from an overfull one, which becomes its alias
+        int[] small = new int[count];
+        int[] large = new int[count];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < count; ++i) {
+            if (probabilities[i] < 1.0) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+        while (smallSize > 0 && largeSize > 0) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            aliases[less] = more;
+            probabilities[more] -= 1.0 - probabilities[less];
+            if (probabilities[more] < 1.0) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        // Anything left over is full, up to rounding error
+        while (largeSize > 0) {
+            probabilities[large[--largeSize]] = 1.0;
+        }
+        while (smallSize > 0) {
+            probabilities[small[--smallSize]] = 1.0;
+        }
+    }
+
+    // Returns -1 if no key has a positive value
+    int sampleKey(Random random) {
+        if (keys.length == 0) {
+            return -1;
+        }
+        int column = random.nextInt(keys.length);
+        return random.nextDouble() < probabilities[column] ? keys[column]
+                : keys[aliases[column]];
+    }
+
+    Optional<Identifier> sample(Random random) {
+        int key = sampleKey(random);
+        return key < 0 ? Optional.empty() : Optional.of(ids[key]);
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.drakonkinst.datatables;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.util.StringIdentifiable;
+
+// Decides how a table memoizes values queried by identifier. Queries by registry element don't
+// use the cache at all once the table is compiled.
+public enum CachePolicy implements StringIdentifiable {
+    // Always computes the value, which is cheaper than caching for small tables
+    NONE,
+    // Keeps a fixed number of values, evicting ones that haven't been queried recently. Suited to
+    // open key spaces, such as misc tables queried with arbitrary identifiers.
+    BOUNDED,
+    // Keeps every value until the table is rebuilt. Suited to closed registries.
+    UNBOUNDED;
+
+    public static final Codec<CachePolicy> CODEC = StringIdentifiable.createBasicCodec(
+            CachePolicy::values);
+    public static final int DEFAULT_SIZE = 1024;
+    // Data packs and servers choose the size, so it is limited to something that can't run the
+    // game out of memory
+    public static final int MAX_SIZE = 1 << 16;
+    public static final Codec<Integer> SIZE_CODEC = Codec.intRange(1, MAX_SIZE);
+
+    private final String name;
+
+    CachePolicy() {
+        this.name = name().toLowerCase();
+    }
+
+    public static CachePolicy forType(DataTableType type) {
+        return type.getRegistry() == null ? BOUNDED : UNBOUNDED;
+    }
+
+    QueryCache create(int size) {
+        return switch (this) {
+            case NONE -> QueryCache.NONE;
+            case BOUNDED -> new QueryCache.Bounded(size);
+            case UNBOUNDED -> new QueryCache.Unbounded();
+        };
+    }
+
+    @Override
+    public String asString() {
+        return name;
+    }
+}
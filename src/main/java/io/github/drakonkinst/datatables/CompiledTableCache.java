@@ -0,0 +1,147 @@
+package io.github.drakonkinst.datatables;
+
+import com.google.common.hash.HashCode;
+import io.github.drakonkinst.datatables.DataTableRegistry.DataTableEntry;
+import io.github.drakonkinst.datatables.DataTableRegistry.ParsedTable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.encoding.VarInts;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+// Resolved tables saved to disk, so that a later start with the exact same data table resources
+// can skip parsing and resolving them. The file is keyed by a fingerprint of every resource, and
+// tables are stored in the same compact encoding used for syncing. The parsed entries of each
+// resource are saved too, so that later reloads can still reuse them. Tags are never saved, since
+// tables are compiled against the current tags after loading as usual.
+final class CompiledTableCache {
+
+    private static final int MAGIC = 0x44544331; // "DTC1"
+    // Must be bumped whenever the table encoding changes
+    private static final int FORMAT_VERSION = 4;
+
+    private final Path path;
+
+    CompiledTableCache(Path path) {
+        this.path = path;
+    }
+
+    // Returns null if there is no cache, or it was written for different resources. The file is
+    // read onto the heap rather than mapped, since a mapping would keep it open until garbage
+    // collected, and Windows can't replace a file that is still mapped.
+    @Nullable
+    CachedTables read(HashCode fingerprint) {
+        try {
+            ByteBuf buf = Unpooled.wrappedBuffer(Files.readAllBytes(path));
+            if (buf.readableBytes() < Integer.BYTES * 2 || buf.readInt() != MAGIC
+                    || buf.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            byte[] savedFingerprint = new byte[fingerprint.bits() / Byte.SIZE];
+            buf.readBytes(savedFingerprint);
+            if (!HashCode.fromBytes(savedFingerprint).equals(fingerprint)) {
+                return null;
+            }
+            Map<Identifier, DataTable> dataTables = DataTablePacketCodecs.TABLES.decode(buf);
+            Map<Identifier, ParsedTable> parsedTables = readParsedTables(buf);
+            return new CachedTables(dataTables, parsedTables);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            DataTables.LOGGER.warn("Couldn't read compiled data tables from {}", path, e);
+            return null;
+        }
+    }
+
+    // Written to a temporary file first so that a crash never leaves a partial cache behind. Each
+    // write has its own temporary file, since writes run on I/O worker threads and two reloads
+    // can save at the same time. Whichever finishes last wins, and a cache saved for older packs
+    // is only ever ignored since its fingerprint no longer matches.
+    void write(HashCode fingerprint, Map<Identifier, DataTable> dataTables,
+            Map<Identifier, ParsedTable> parsedTables) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            buf.writeInt(MAGIC);
+            buf.writeInt(FORMAT_VERSION);
+            buf.writeBytes(fingerprint.asBytes());
+            DataTablePacketCodecs.TABLES.encode(buf, dataTables);
+            writeParsedTables(buf, parsedTables);
+
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(),
+                    ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    while (buf.isReadable()) {
+                        buf.readBytes(channel, buf.readableBytes());
+                    }
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            DataTables.LOGGER.info("Saved {} compiled data tables to {}", dataTables.size(),
+                    path);
+        } catch (IOException | RuntimeException e) {
+            DataTables.LOGGER.warn("Couldn't save compiled data tables to {}", path, e);
+        } finally {
+            buf.release();
+        }
+    }
+
+    // Keyed by resource ID, which for multi-column tables differs from the ID of each column
+    private static void writeParsedTables(ByteBuf buf, Map<Identifier, ParsedTable> parsedTables) {
+        VarInts.write(buf, parsedTables.size());
+        for (Map.Entry<Identifier, ParsedTable> entry : parsedTables.entrySet()) {
+            Identifier.PACKET_CODEC.encode(buf, entry.getKey());
+            ParsedTable parsedTable = entry.getValue();
+            VarInts.write(buf, parsedTable.columns().size());
+            for (String column : parsedTable.columns()) {
+                PacketCodecs.STRING.encode(buf, column);
+            }
+            VarInts.write(buf, parsedTable.entries().size());
+            for (Map.Entry<Identifier, DataTableEntry> tableEntry : parsedTable.entries()
+                    .entrySet()) {
+                Identifier.PACKET_CODEC.encode(buf, tableEntry.getKey());
+                DataTablePacketCodecs.ENTRY.encode(buf, tableEntry.getValue());
+            }
+        }
+    }
+
+    private static Map<Identifier, ParsedTable> readParsedTables(ByteBuf buf) {
+        int size = VarInts.read(buf);
+        Map<Identifier, ParsedTable> parsedTables = new HashMap<>(size);
+        for (int i = 0; i < size; ++i) {
+            Identifier resourceId = Identifier.PACKET_CODEC.decode(buf);
+            int columnCount = VarInts.read(buf);
+            List<String> columns = new ArrayList<>(columnCount);
+            for (int j = 0; j < columnCount; ++j) {
+                columns.add(PacketCodecs.STRING.decode(buf));
+            }
+            int entryCount = VarInts.read(buf);
+            Map<Identifier, DataTableEntry> entries = new HashMap<>(entryCount);
+            for (int j = 0; j < entryCount; ++j) {
+                Identifier id = Identifier.PACKET_CODEC.decode(buf);
+                entries.put(id, DataTablePacketCodecs.ENTRY.decode(buf));
+            }
+            parsedTables.put(resourceId, new ParsedTable(List.copyOf(columns), entries));
+        }
+        return parsedTables;
+    }
+
+    record CachedTables(Map<Identifier, DataTable> dataTables,
+                        Map<Identifier, ParsedTable> parsedTables) {}
+}
@@ -0,0 +1,43 @@
+package io.github.drakonkinst.datatables;
+
+import com.mojang.serialization.Codec;
+import net.minecraft.util.StringIdentifiable;
+
+// Decides the value of an element that is matched by more than one tag entry
+public enum ConflictPolicy implements StringIdentifiable {
+    // Use the tag that comes first in the element's own tag list
+    FIRST,
+    MAX,
+    MIN,
+    SUM,
+    // Use the tag that comes first in the table's tag priority list
+    PRIORITY;
+
+    public static final Codec<ConflictPolicy> CODEC = StringIdentifiable.createBasicCodec(
+            ConflictPolicy::values);
+
+    private final String name;
+
+    ConflictPolicy() {
+        this.name = name().toLowerCase();
+    }
+
+    // Only meaningful for policies that combine values rather than pick a tag
+    int combine(int current, int value) {
+        return switch (this) {
+            case MAX -> Math.max(current, value);
+            case MIN -> Math.min(current, value);
+            case SUM -> current + value;
+            default -> current;
+        };
+    }
+
+    boolean picksTag() {
+        return this == FIRST || this == PRIORITY;
+    }
+
+    @Override
+    public String asString() {
+        return name;
+    }
+}
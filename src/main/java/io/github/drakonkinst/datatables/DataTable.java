@@ -1,26 +1,56 @@
 package io.github.drakonkinst.datatables;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMaps;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.OptionalInt;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.command.argument.BlockArgumentParser;
+import net.minecraft.command.argument.BlockArgumentParser.BlockResult;
+import net.minecraft.component.ComponentChanges;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
 import net.minecraft.network.RegistryByteBuf;
 import net.minecraft.network.codec.PacketCodec;
-import net.minecraft.network.codec.PacketCodecs;
 import net.minecraft.registry.DefaultedRegistry;
 import net.minecraft.registry.Registries;
-import net.minecraft.registry.entry.RegistryEntry.Reference;
+import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.registry.entry.RegistryEntry;
 import net.minecraft.registry.tag.TagKey;
+import net.minecraft.state.property.Property;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.collection.PaletteStorage;
+import net.minecraft.util.math.random.Random;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.IdListPalette;
+import net.minecraft.world.chunk.Palette;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.jetbrains.annotations.Nullable;
 
+// Queries are safe from any thread. Entry tables are frozen on construction, and compiling returns
+// a new table rather than modifying this one, so a published table's values never change.
+// Anything computed lazily afterwards is published through volatile fields or a concurrent map.
 public class DataTable {
 
     public static final Codec<DataTable> CODEC = RecordCodecBuilder.create(
@@ -31,10 +61,34 @@ public class DataTable {
                             object2IntMap(Identifier.CODEC).fieldOf("element_entries")
                                     .forGetter(dataTable -> dataTable.elementEntryTable),
                             object2IntMap(Identifier.CODEC).fieldOf("tag_entries")
-                                    .forGetter(dataTable -> dataTable.tagEntryTable))
-                    .apply(instance, DataTable::new));
-    public static final PacketCodec<RegistryByteBuf, DataTable> PACKET_CODEC = PacketCodecs.registryCodec(
-            CODEC);
+                                    .forGetter(dataTable -> dataTable.tagEntryTable),
+                            ConflictPolicy.CODEC.optionalFieldOf("conflict_policy",
+                                    ConflictPolicy.FIRST).forGetter(DataTable::getConflictPolicy),
+                            Identifier.CODEC.listOf().optionalFieldOf("tag_priority", List.of())
+                                    .forGetter(dataTable -> dataTable.tagPriority),
+                            object2IntMap(Codec.STRING).optionalFieldOf("state_entries",
+                                            Object2IntMaps.emptyMap())
+                                    .forGetter(dataTable -> dataTable.stateEntryTable),
+                            object2IntMap(Codec.STRING).optionalFieldOf("component_entries",
+                                            Object2IntMaps.emptyMap())
+                                    .forGetter(dataTable -> dataTable.componentEntryTable),
+                            CachePolicy.CODEC.optionalFieldOf("cache")
+                                    .forGetter(dataTable -> Optional.of(dataTable.cachePolicy)),
+                            CachePolicy.SIZE_CODEC.optionalFieldOf("cache_size",
+                                    CachePolicy.DEFAULT_SIZE).forGetter(DataTable::getCacheSize),
+                            Derivation.CODEC.optionalFieldOf("derivation")
+                                    .forGetter(dataTable -> Optional.ofNullable(
+                                            dataTable.derivation)))
+                    .apply(instance,
+                            (type, defaultValue, elementEntryTable, tagEntryTable, conflictPolicy,
+                                    tagPriority, stateEntryTable, componentEntryTable,
+                                    cachePolicy, cacheSize, derivation) -> new DataTable(type,
+                                    defaultValue, elementEntryTable, tagEntryTable,
+                                    conflictPolicy, tagPriority, stateEntryTable,
+                                    componentEntryTable,
+                                    cachePolicy.orElseGet(() -> CachePolicy.forType(type)),
+                                    cacheSize, derivation.orElse(null))));
+    public static final PacketCodec<RegistryByteBuf, DataTable> PACKET_CODEC = DataTablePacketCodecs.TABLE.cast();
 
     // TODO: Move to utils?
     private static <T> Codec<Object2IntMap<T>> object2IntMap(Codec<T> keyCodec) {
@@ -45,70 +99,894 @@ public class DataTable {
     private final DataTableType type;
     private final Object2IntMap<Identifier> elementEntryTable;
     private final Object2IntMap<Identifier> tagEntryTable;
+    // Only used by block tables
+    private final Object2IntMap<String> stateEntryTable;
+    // Only used by item tables
+    private final Object2IntMap<String> componentEntryTable;
     private final int defaultValue;
-    private final Object2IntMap<Identifier> cache = new Object2IntOpenHashMap<>();
+    private final ConflictPolicy conflictPolicy;
+    private final List<Identifier> tagPriority;
+    private final CachePolicy cachePolicy;
+    private final int cacheSize;
+    // Only typed derived tables, whose values are computed from their inputs when compiled
+    @Nullable
+    private final Derivation derivation;
+    // Only shared with a compiled copy that has the same values, so a query can never write a
+    // value into the cache of a table with different values
+    private final QueryCache cache;
+    // Values indexed by registry raw ID, only available for typed tables once compiled. Typed
+    // queries still find the raw ID through the registry, which is an identity hash lookup, but
+    // skip hashing the identifier and probing the query cache.
+    @Nullable
+    private final int[] rawIdValues;
+    // Values indexed by block state raw ID, only available for block tables with state entries
+    @Nullable
+    private final int[] stateValues;
+    // Only available for item tables with component entries
+    @Nullable
+    private final ItemComponentMatcher componentMatcher;
+    // Built on first use and carried over to compiled copies with the same values; racing
+    // threads build equivalent copies
+    @Nullable
+    private volatile ReverseIndex reverseIndex = null;
+    @Nullable
+    private volatile AliasSampler sampler = null;
+    // Computed on first use; racing threads compute the same value
+    private volatile long contentHash = 0L;
+    private volatile boolean hasContentHash = false;
+    // Striped so that counting doesn't add contention between threads querying the same table.
+    // Misses are queries whose value wasn't cached or compiled and had to be computed. Shared
+    // with compiled copies, which are the same table as far as counting is concerned.
+    private final LongAdder queries;
+    private final LongAdder misses;
+    private final LongAdder cacheHits;
 
     public DataTable(DataTableType type, int defaultValue,
             Object2IntMap<Identifier> elementEntryTable, Object2IntMap<Identifier> tagEntryTable) {
+        this(type, defaultValue, elementEntryTable, tagEntryTable, ConflictPolicy.FIRST,
+                List.of(), Object2IntMaps.emptyMap(), CachePolicy.forType(type),
+                CachePolicy.DEFAULT_SIZE);
+    }
+
+    public DataTable(DataTableType type, int defaultValue,
+            Object2IntMap<Identifier> elementEntryTable, Object2IntMap<Identifier> tagEntryTable,
+            ConflictPolicy conflictPolicy, List<Identifier> tagPriority,
+            Object2IntMap<String> stateEntryTable, CachePolicy cachePolicy, int cacheSize) {
+        this(type, defaultValue, elementEntryTable, tagEntryTable, conflictPolicy, tagPriority,
+                stateEntryTable, Object2IntMaps.emptyMap(), cachePolicy, cacheSize, null);
+    }
+
+    public DataTable(DataTableType type, int defaultValue,
+            Object2IntMap<Identifier> elementEntryTable, Object2IntMap<Identifier> tagEntryTable,
+            ConflictPolicy conflictPolicy, List<Identifier> tagPriority,
+            Object2IntMap<String> stateEntryTable, Object2IntMap<String> componentEntryTable,
+            CachePolicy cachePolicy, int cacheSize, @Nullable Derivation derivation) {
         this.type = type;
-        this.elementEntryTable = elementEntryTable;
-        this.tagEntryTable = tagEntryTable;
+        this.elementEntryTable = freeze(elementEntryTable);
+        this.tagEntryTable = freeze(tagEntryTable);
+        this.stateEntryTable = freeze(stateEntryTable);
+        this.componentEntryTable = freeze(componentEntryTable);
         this.defaultValue = defaultValue;
+        this.conflictPolicy = conflictPolicy;
+        this.tagPriority = List.copyOf(tagPriority);
+        this.cachePolicy = cachePolicy;
+        this.cacheSize = cacheSize;
+        this.derivation = derivation;
+        this.cache = cachePolicy.create(cacheSize);
+        this.rawIdValues = null;
+        this.stateValues = null;
+        this.componentMatcher = null;
+        this.queries = new LongAdder();
+        this.misses = new LongAdder();
+        this.cacheHits = new LongAdder();
     }
 
-    public int query(Identifier id) {
-        if (this.cache.containsKey(id)) {
-            return this.cache.getInt(id);
+    // A compiled copy of the source table, sharing its frozen entries
+    private DataTable(DataTable source, @Nullable int[] rawIdValues, @Nullable int[] stateValues,
+            @Nullable ItemComponentMatcher componentMatcher, boolean unchanged) {
+        this.type = source.type;
+        this.elementEntryTable = source.elementEntryTable;
+        this.tagEntryTable = source.tagEntryTable;
+        this.stateEntryTable = source.stateEntryTable;
+        this.componentEntryTable = source.componentEntryTable;
+        this.defaultValue = source.defaultValue;
+        this.conflictPolicy = source.conflictPolicy;
+        this.tagPriority = source.tagPriority;
+        this.cachePolicy = source.cachePolicy;
+        this.cacheSize = source.cacheSize;
+        this.derivation = source.derivation;
+        this.rawIdValues = rawIdValues;
+        this.stateValues = stateValues;
+        this.componentMatcher = componentMatcher;
+        this.queries = source.queries;
+        this.misses = source.misses;
+        this.cacheHits = source.cacheHits;
+        if (source.hasContentHash) {
+            this.contentHash = source.contentHash;
+            this.hasContentHash = true;
         }
-
-        int value;
-        // Specific items take precedence
-        if (elementEntryTable.containsKey(id)) {
-            value = elementEntryTable.getInt(id);
+        // Keep the warmed cache if tag changes didn't affect this table
+        if (unchanged) {
+            this.cache = source.cache;
+            this.reverseIndex = source.reverseIndex;
+            this.sampler = source.sampler;
         } else {
-            value = getValueFromTag(id).orElse(defaultValue);
+            this.cache = cachePolicy.create(cacheSize);
         }
+    }
 
-        this.cache.put(id, value);
-        return value;
+    // Tables built by the resolver are already layered over frozen storage
+    private static <K> Object2IntMap<K> freeze(Object2IntMap<K> entries) {
+        if (entries instanceof LayeredEntryMap<K>) {
+            return entries;
+        }
+        return FrozenEntryMap.copyOf(entries);
+    }
+
+    public int query(Identifier id) {
+        queries.increment();
+        return lookup(id);
     }
 
     public int query(Item item) {
-        return query(Registries.ITEM.getId(item));
+        queries.increment();
+        return lookup(item);
+    }
+
+    // Also matches component entries, unlike querying the stack's item
+    public int query(ItemStack stack) {
+        queries.increment();
+        Item item = stack.getItem();
+        ItemComponentMatcher componentMatcher = this.componentMatcher;
+        if (componentMatcher != null) {
+            int rawId = Registries.ITEM.getRawId(item);
+            if (componentMatcher.hasEntries(rawId)) {
+                // Stacks without changes are matched ahead of time, and aren't worth hashing
+                ComponentChanges changes = stack.getComponentChanges();
+                if (changes.isEmpty()) {
+                    return componentMatcher.matchDefault(rawId, lookup(item));
+                }
+                // The item's own value is only needed if the stack has to be matched
+                ItemComponentMatcher.StackKey key = new ItemComponentMatcher.StackKey(item,
+                        changes);
+                Integer memoized = componentMatcher.getMemoized(key);
+                if (memoized != null) {
+                    return memoized;
+                }
+                return componentMatcher.match(stack, key, rawId, lookup(item));
+            }
+        }
+        return lookup(item);
     }
 
     public int query(Entity entity) {
-        return query(EntityType.getId(entity.getType()));
+        queries.increment();
+        return lookup(entity.getType());
+    }
+
+    public int query(EntityType<?> entityType) {
+        queries.increment();
+        return lookup(entityType);
     }
 
     public int query(BlockState blockState) {
-        return query(blockState.getBlock());
+        queries.increment();
+        return lookup(blockState);
     }
 
     public int query(Block block) {
-        return query(Registries.BLOCK.getId(block));
+        queries.increment();
+        return lookup(block);
+    }
+
+    // Lookups don't count as queries, so that queries falling back on each other are only counted
+    // once
+    private int lookup(Identifier id) {
+        QueryCache cache = this.cache;
+        Integer cached = cache.get(id);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        int value = computeValue(id);
+        cache.put(id, value);
+        return value;
+    }
+
+    private int lookup(Item item) {
+        int[] values = getRawIdValues(DataTableType.ITEM);
+        if (values != null) {
+            int rawId = Registries.ITEM.getRawId(item);
+            if (rawId >= 0 && rawId < values.length) {
+                return values[rawId];
+            }
+        }
+        return lookup(Registries.ITEM.getId(item));
+    }
+
+    private int lookup(EntityType<?> entityType) {
+        int[] values = getRawIdValues(DataTableType.ENTITY);
+        if (values != null) {
+            int rawId = Registries.ENTITY_TYPE.getRawId(entityType);
+            if (rawId >= 0 && rawId < values.length) {
+                return values[rawId];
+            }
+        }
+        return lookup(EntityType.getId(entityType));
+    }
+
+    private int lookup(BlockState blockState) {
+        int[] values = this.stateValues;
+        if (values != null) {
+            int rawId = Block.getRawIdFromState(blockState);
+            if (rawId >= 0 && rawId < values.length) {
+                return values[rawId];
+            }
+        }
+        return lookup(blockState.getBlock());
+    }
+
+    private int lookup(Block block) {
+        int[] values = getRawIdValues(DataTableType.BLOCK);
+        if (values != null) {
+            int rawId = Registries.BLOCK.getRawId(block);
+            if (rawId >= 0 && rawId < values.length) {
+                return values[rawId];
+            }
+        }
+        return lookup(Registries.BLOCK.getId(block));
+    }
+
+    // Fills results with the value of each raw ID in this table's own registry
+    public void queryRawIds(int[] rawIds, int[] results) {
+        queries.add(rawIds.length);
+        int[] values = this.rawIdValues;
+        DefaultedRegistry<?> registry = this.type.getRegistry();
+        for (int i = 0; i < rawIds.length; ++i) {
+            int rawId = rawIds[i];
+            if (values != null && rawId >= 0 && rawId < values.length) {
+                results[i] = values[rawId];
+            } else if (registry != null) {
+                results[i] = queryRawId(registry, rawId);
+            } else {
+                results[i] = defaultValue;
+            }
+        }
+    }
+
+    public void queryStates(BlockState[] blockStates, int[] results) {
+        queries.add(blockStates.length);
+        for (int i = 0; i < blockStates.length; ++i) {
+            results[i] = lookup(blockStates[i]);
+        }
+    }
+
+    // Fills results with the value of each block state raw ID, as in Block.STATE_IDS
+    public void queryStateIds(int[] stateIds, int[] results) {
+        queries.add(stateIds.length);
+        lookupStateIds(stateIds, results, stateIds.length);
+    }
+
+    // Safe to call with the same array for state IDs and results
+    private void lookupStateIds(int[] stateIds, int[] results, int length) {
+        int[] values = this.stateValues;
+        for (int i = 0; i < length; ++i) {
+            int stateId = stateIds[i];
+            if (values != null && stateId >= 0 && stateId < values.length) {
+                results[i] = values[stateId];
+            } else {
+                BlockState state = Block.getStateFromRawId(stateId);
+                results[i] = state == null ? defaultValue : lookup(state);
+            }
+        }
+    }
+
+    // Fills results with the value at each position of the container, using the container's own
+    // index order. Each palette entry is looked up once, then every position is mapped from the
+    // palette index unpacked from the container's storage, without reading positions one by one.
+    public void queryContainer(PalettedContainer<BlockState> container, int[] results) {
+        // Read once, since the container swaps in new data when its palette grows
+        PalettedContainer.Data<BlockState> data = container.data;
+        PaletteStorage storage = data.storage();
+        Palette<BlockState> palette = data.palette();
+        int size = storage.getSize();
+        storage.writePaletteIndices(results);
+        queries.add(size);
+        if (palette instanceof IdListPalette<BlockState>) {
+            // Indices into the global palette are already block state raw IDs
+            lookupStateIds(results, results, size);
+            return;
+        }
+
+        int[] paletteValues = new int[palette.getSize()];
+        for (int i = 0; i < paletteValues.length; ++i) {
+            paletteValues[i] = lookup(palette.get(i));
+        }
+        for (int i = 0; i < size; ++i) {
+            results[i] = paletteValues[results[i]];
+        }
+    }
+
+    // Calls the consumer once per distinct state in the container, along with how many positions
+    // hold that state
+    public void queryPalette(PalettedContainer<BlockState> container,
+            PaletteValueConsumer consumer) {
+        container.count((state, count) -> consumer.accept(query(state), count));
+    }
+
+    public long sum(PalettedContainer<BlockState> container) {
+        long[] sum = { 0L };
+        queryPalette(container, (value, count) -> sum[0] += (long) value * count);
+        return sum[0];
+    }
+
+    public int max(PalettedContainer<BlockState> container) {
+        int[] max = { Integer.MIN_VALUE };
+        queryPalette(container, (value, count) -> max[0] = Math.max(max[0], value));
+        return max[0];
+    }
+
+    public int min(PalettedContainer<BlockState> container) {
+        int[] min = { Integer.MAX_VALUE };
+        queryPalette(container, (value, count) -> min[0] = Math.min(min[0], value));
+        return min[0];
+    }
+
+    public long sum(Chunk chunk) {
+        long sum = 0L;
+        for (ChunkSection section : chunk.getSectionArray()) {
+            sum += sum(section.getBlockStateContainer());
+        }
+        return sum;
+    }
+
+    public int max(Chunk chunk) {
+        int max = Integer.MIN_VALUE;
+        for (ChunkSection section : chunk.getSectionArray()) {
+            max = Math.max(max, max(section.getBlockStateContainer()));
+        }
+        return max;
+    }
+
+    public int min(Chunk chunk) {
+        int min = Integer.MAX_VALUE;
+        for (ChunkSection section : chunk.getSectionArray()) {
+            min = Math.min(min, min(section.getBlockStateContainer()));
+        }
+        return min;
     }
 
     public DataTableType getType() {
         return type;
     }
 
-    private OptionalInt getValueFromTag(Identifier id) {
+    public ConflictPolicy getConflictPolicy() {
+        return conflictPolicy;
+    }
+
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    // Only used by bounded caches
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    // Hash of everything that defines this table, independent of map iteration order, so that two
+    // tables with the same content always have the same hash
+    public long getContentHash() {
+        if (!hasContentHash) {
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            hasher.putInt(type.ordinal()).putInt(conflictPolicy.ordinal()).putInt(defaultValue);
+            hasher.putInt(cachePolicy.ordinal()).putInt(cacheSize);
+            putSortedEntries(hasher, elementEntryTable);
+            putSortedEntries(hasher, tagEntryTable);
+            hasher.putInt(tagPriority.size());
+            for (Identifier id : tagPriority) {
+                hasher.putString(id.toString(), StandardCharsets.UTF_8);
+            }
+            putSortedEntries(hasher, stateEntryTable);
+            putSortedEntries(hasher, componentEntryTable);
+            hasher.putBoolean(derivation != null);
+            if (derivation != null) {
+                hasher.putString(derivation.expression().getSource(), StandardCharsets.UTF_8);
+                hasher.putInt(derivation.inputs().size());
+                for (Identifier id : derivation.inputs()) {
+                    hasher.putString(id.toString(), StandardCharsets.UTF_8);
+                }
+            }
+            contentHash = hasher.hash().asLong();
+            hasContentHash = true;
+        }
+        return contentHash;
+    }
+
+    private static <K> void putSortedEntries(Hasher hasher, Object2IntMap<K> entries) {
+        List<Object2IntMap.Entry<K>> sorted = new ArrayList<>(entries.object2IntEntrySet());
+        sorted.sort(Comparator.comparing(entry -> entry.getKey().toString()));
+        hasher.putInt(sorted.size());
+        for (Object2IntMap.Entry<K> entry : sorted) {
+            hasher.putString(entry.getKey().toString(), StandardCharsets.UTF_8);
+            hasher.putInt(entry.getIntValue());
+        }
+    }
+
+    public int getDefaultValue() {
+        return defaultValue;
+    }
+
+    public ReverseIndex getReverseIndex() {
+        ReverseIndex reverseIndex = this.reverseIndex;
+        if (reverseIndex == null) {
+            KeyedValues keyedValues = collectKeyedValues();
+            reverseIndex = new ReverseIndex(keyedValues.values(), keyedValues.ids(),
+                    keyedValues.rawIds());
+            this.reverseIndex = reverseIndex;
+        }
+        return reverseIndex;
+    }
+
+    // Picks a key with probability proportional to its value, treating the table as weights.
+    // Keys are the same as in the reverse index. Returns -1 if no key has a positive value.
+    public int sampleKey(Random random) {
+        return getSampler().sampleKey(random);
+    }
+
+    public Optional<Identifier> sample(Random random) {
+        return getSampler().sample(random);
+    }
+
+    private AliasSampler getSampler() {
+        AliasSampler sampler = this.sampler;
+        if (sampler == null) {
+            KeyedValues keyedValues = collectKeyedValues();
+            sampler = new AliasSampler(keyedValues.values(), keyedValues.ids());
+            this.sampler = sampler;
+        }
+        return sampler;
+    }
+
+    // Every element with its expanded value for compiled typed tables, or else the table's own
+    // element entries
+    private KeyedValues collectKeyedValues() {
+        int[] values = this.rawIdValues;
+        DefaultedRegistry<?> registry = this.type.getRegistry();
+        if (values != null && registry != null) {
+            return new KeyedValues(values, getIds(registry, values.length), true);
+        }
+
+        Identifier[] ids = new Identifier[elementEntryTable.size()];
+        int[] entryValues = new int[ids.length];
+        int key = 0;
+        for (Object2IntMap.Entry<Identifier> entry : elementEntryTable.object2IntEntrySet()) {
+            ids[key] = entry.getKey();
+            entryValues[key] = entry.getIntValue();
+            ++key;
+        }
+        return new KeyedValues(entryValues, ids, false);
+    }
+
+    private static <T> Identifier[] getIds(DefaultedRegistry<T> registry, int size) {
+        Identifier[] ids = new Identifier[size];
+        for (int rawId = 0; rawId < size; ++rawId) {
+            T element = registry.get(rawId);
+            ids[rawId] = element == null ? registry.getDefaultId() : registry.getId(element);
+        }
+        return ids;
+    }
+
+    // Counted since this table was built, so they start over when a reload rebuilds it
+    public long getQueryCount() {
+        return queries.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    // Queries by identifier that were answered from the cache
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    // Identifiers currently memoized by queries
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    // Item stack variants currently memoized by queries matching component entries
+    public int getMemoizedStackCount() {
+        ItemComponentMatcher componentMatcher = this.componentMatcher;
+        return componentMatcher == null ? 0 : componentMatcher.getMemoizedCount();
+    }
+
+    // Evictions from the current cache, which is replaced whenever the table's values change
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    Object2IntMap<Identifier> getElementEntryTable() {
+        return elementEntryTable;
+    }
+
+    Object2IntMap<Identifier> getTagEntryTable() {
+        return tagEntryTable;
+    }
+
+    Object2IntMap<String> getStateEntryTable() {
+        return stateEntryTable;
+    }
+
+    Object2IntMap<String> getComponentEntryTable() {
+        return componentEntryTable;
+    }
+
+    List<Identifier> getTagPriority() {
+        return tagPriority;
+    }
+
+    @Nullable
+    Derivation getDerivation() {
+        return derivation;
+    }
+
+    // Visits every block of frozen storage behind this table's entries, some of which may be
+    // shared with other tables
+    void forEachStorage(Consumer<FrozenEntryMap<?>> consumer) {
+        forEachStorage(elementEntryTable, consumer);
+        forEachStorage(tagEntryTable, consumer);
+        forEachStorage(stateEntryTable, consumer);
+        forEachStorage(componentEntryTable, consumer);
+    }
+
+    private static <K> void forEachStorage(Object2IntMap<K> entries,
+            Consumer<FrozenEntryMap<?>> consumer) {
+        if (entries instanceof LayeredEntryMap<K> layered) {
+            layered.forEachLayer(consumer::accept);
+        } else if (entries instanceof FrozenEntryMap<K> frozen) {
+            consumer.accept(frozen);
+        }
+    }
+
+    // Estimated size of this table's entries if each were stored in its own hash map, as they
+    // were before being frozen
+    long estimateUnfrozenBytes() {
+        return FrozenEntryMap.estimateHashMapBytes(elementEntryTable.size())
+                + FrozenEntryMap.estimateHashMapBytes(tagEntryTable.size())
+                + FrozenEntryMap.estimateHashMapBytes(stateEntryTable.size())
+                + FrozenEntryMap.estimateHashMapBytes(componentEntryTable.size());
+    }
+
+    // Must not be modified
+    @Nullable
+    int[] getCompiledValues() {
+        return rawIdValues;
+    }
+
+    @Nullable
+    int[] getCompiledStateValues() {
+        return stateValues;
+    }
+
+    DataTable compile() {
+        return compile(null, id -> null);
+    }
+
+    // Returns a copy of this table with a raw ID lookup built from the registry it is typed to,
+    // expanding every tag entry into its members, and leaves this table untouched. Must be
+    // compiled again whenever tags change. Item component entries need registries to parse, and
+    // are ignored without them. Misc tables have nothing to compile and are returned as-is.
+    // Derived tables look up their inputs in compiledTables, which must already be compiled and
+    // returns null for missing tables.
+    DataTable compile(@Nullable RegistryWrapper.WrapperLookup registries,
+            Function<Identifier, DataTable> compiledTables) {
         DefaultedRegistry<?> registry = this.type.getRegistry();
         if (registry == null) {
-            return OptionalInt.empty();
+            return this;
+        }
+        DerivedValues derived = this.derivation == null ? null
+                : evaluateDerivation(this.derivation, registry.size(), compiledTables);
+        // Raw IDs given a value by this table's own entries, which override derived values
+        BitSet ownEntries = new BitSet();
+        int[] rawIdValues = compileRawIdValues(registry,
+                derived == null ? null : derived.rawIdValues(), ownEntries);
+        int[] derivedStateValues = derived == null ? null : derived.stateValues();
+        int[] stateValues = null;
+        if (this.type == DataTableType.BLOCK && (!stateEntryTable.isEmpty()
+                || derivedStateValues != null)) {
+            stateValues = compileStateValues(rawIdValues, derivedStateValues, ownEntries);
         }
-        Optional<? extends Reference<?>> optionalEntry = registry.getEntry(id);
-        if (optionalEntry.isEmpty()) {
-            return OptionalInt.empty();
+        // Always rebuilt, since registries may have changed along with tags
+        ItemComponentMatcher componentMatcher = null;
+        if (this.type == DataTableType.ITEM && !componentEntryTable.isEmpty()
+                && registries != null) {
+            componentMatcher = ItemComponentMatcher.compile(componentEntryTable, registries);
         }
-        // TODO: Can build some conflict resolution here: take highest, take lowest? Right now, it's take first
-        Optional<? extends TagKey<?>> matchingTag = optionalEntry.get()
-                .streamTags()
-                .filter(tag -> this.tagEntryTable.containsKey(tag.id()))
-                .findFirst();
-        return matchingTag.map(tagKey -> OptionalInt.of(this.tagEntryTable.getInt(tagKey.id())))
-                .orElseGet(OptionalInt::empty);
+        boolean unchanged = Arrays.equals(rawIdValues, this.rawIdValues) && Arrays.equals(
+                stateValues, this.stateValues);
+        if (unchanged) {
+            rawIdValues = this.rawIdValues;
+            stateValues = this.stateValues;
+        }
+        return new DataTable(this, rawIdValues, stateValues, componentMatcher, unchanged);
+    }
+
+    // Evaluates the expression on the compiled values of every input, for each raw ID and, for
+    // block tables with an input that has state values, for each block state. Returns null if
+    // an input is missing or isn't a compiled table of the same type, leaving only this table's
+    // own entries.
+    @Nullable
+    private DerivedValues evaluateDerivation(Derivation derivation, int size,
+            Function<Identifier, DataTable> compiledTables) {
+        List<Identifier> inputIds = derivation.inputs();
+        if (inputIds.size() != derivation.expression().getVariables().size()) {
+            DataTables.LOGGER.warn("Ignoring expression {} with {} inputs",
+                    derivation.expression(), inputIds.size());
+            return null;
+        }
+        DataTable[] inputs = new DataTable[inputIds.size()];
+        boolean hasStateValues = false;
+        for (int i = 0; i < inputs.length; ++i) {
+            DataTable input = compiledTables.apply(inputIds.get(i));
+            if (input == null || input.type != this.type || input.rawIdValues == null) {
+                DataTables.LOGGER.warn(
+                        "Unable to derive values from {}, which is not a compiled {} table",
+                        inputIds.get(i), this.type.asString());
+                return null;
+            }
+            inputs[i] = input;
+            hasStateValues |= input.stateValues != null;
+        }
+
+        int[] row = new int[inputs.length];
+        int[] rawIdValues = new int[size];
+        for (int rawId = 0; rawId < size; ++rawId) {
+            for (int i = 0; i < inputs.length; ++i) {
+                row[i] = valueAt(inputs[i].rawIdValues, rawId, inputs[i].defaultValue);
+            }
+            rawIdValues[rawId] = derivation.expression().evaluate(row);
+        }
+
+        int[] stateValues = null;
+        if (this.type == DataTableType.BLOCK && hasStateValues) {
+            stateValues = new int[Block.STATE_IDS.size()];
+            for (int stateId = 0; stateId < stateValues.length; ++stateId) {
+                BlockState state = Block.STATE_IDS.get(stateId);
+                int blockRawId = state == null ? -1 : Registries.BLOCK.getRawId(state.getBlock());
+                for (int i = 0; i < inputs.length; ++i) {
+                    // Inputs without state values give every state its block's value
+                    int[] inputStateValues = inputs[i].stateValues;
+                    row[i] = inputStateValues != null ? valueAt(inputStateValues, stateId,
+                            inputs[i].defaultValue)
+                            : valueAt(inputs[i].rawIdValues, blockRawId, inputs[i].defaultValue);
+                }
+                stateValues[stateId] = derivation.expression().evaluate(row);
+            }
+        }
+        return new DerivedValues(rawIdValues, stateValues);
+    }
+
+    private static int valueAt(int[] values, int index, int defaultValue) {
+        return index >= 0 && index < values.length ? values[index] : defaultValue;
+    }
+
+    // Starts from the derived values if given, which are then owned by the compiled table
+    private <T> int[] compileRawIdValues(DefaultedRegistry<T> registry,
+            @Nullable int[] derivedValues, BitSet ownEntries) {
+        int[] values = derivedValues;
+        if (values == null) {
+            values = new int[registry.size()];
+            Arrays.fill(values, defaultValue);
+        }
+        expandTags(registry, values, ownEntries);
+
+        // Specific items take precedence
+        for (Object2IntMap.Entry<Identifier> entry : elementEntryTable.object2IntEntrySet()) {
+            int rawId = getRawId(registry, entry.getKey());
+            if (rawId >= 0 && rawId < values.length) {
+                values[rawId] = entry.getIntValue();
+                ownEntries.set(rawId);
+            }
+        }
+        return values;
     }
-}
 
+    private <T> void expandTags(DefaultedRegistry<T> registry, int[] values, BitSet ownEntries) {
+        if (tagEntryTable.isEmpty()) {
+            return;
+        }
+
+        // Index of the tag currently deciding each element's value, or -1 if none matched yet
+        int[] winners = new int[values.length];
+        Arrays.fill(winners, -1);
+        List<TagKey<T>> tags = new ArrayList<>(tagEntryTable.size());
+        for (Object2IntMap.Entry<Identifier> tagEntry : tagEntryTable.object2IntEntrySet()) {
+            TagKey<T> tag = TagKey.of(registry.getKey(), tagEntry.getKey());
+            int tagIndex = tags.size();
+            int tagValue = tagEntry.getIntValue();
+            tags.add(tag);
+
+            for (RegistryEntry<T> member : registry.iterateEntries(tag)) {
+                int rawId = registry.getRawId(member.value());
+                if (rawId < 0 || rawId >= values.length) {
+                    continue;
+                }
+                int winner = winners[rawId];
+                if (winner < 0) {
+                    values[rawId] = tagValue;
+                    winners[rawId] = tagIndex;
+                    ownEntries.set(rawId);
+                } else if (!conflictPolicy.picksTag()) {
+                    values[rawId] = conflictPolicy.combine(values[rawId], tagValue);
+                } else if (takesPrecedence(member, tag, tags.get(winner))) {
+                    values[rawId] = tagValue;
+                    winners[rawId] = tagIndex;
+                }
+            }
+        }
+    }
+
+    private <T> boolean takesPrecedence(RegistryEntry<T> element, TagKey<T> candidate,
+            TagKey<T> current) {
+        if (conflictPolicy == ConflictPolicy.PRIORITY) {
+            return getPriority(candidate.id()) < getPriority(current.id());
+        }
+        // Only reached on an actual conflict, so walking the element's tags here is rare
+        return element.streamTags()
+                .filter(tag -> tag.equals(candidate) || tag.equals(current))
+                .findFirst()
+                .map(candidate::equals)
+                .orElse(false);
+    }
+
+    private int getPriority(Identifier tagId) {
+        int index = tagPriority.indexOf(tagId);
+        // Tags missing from the priority list lose to every listed tag
+        return index < 0 ? Integer.MAX_VALUE : index;
+    }
+
+    private int[] compileStateValues(int[] blockValues, @Nullable int[] derivedStateValues,
+            BitSet ownEntries) {
+        // Every state starts with its block's value, or its derived value unless this table has
+        // its own entry for the block
+        int[] values = new int[Block.STATE_IDS.size()];
+        for (int rawId = 0; rawId < values.length; ++rawId) {
+            BlockState state = Block.STATE_IDS.get(rawId);
+            int blockRawId = state == null ? -1 : Registries.BLOCK.getRawId(state.getBlock());
+            if (blockRawId < 0 || blockRawId >= blockValues.length) {
+                values[rawId] = defaultValue;
+            } else if (derivedStateValues != null && !ownEntries.get(blockRawId)) {
+                values[rawId] = valueAt(derivedStateValues, rawId, blockValues[blockRawId]);
+            } else {
+                values[rawId] = blockValues[blockRawId];
+            }
+        }
+
+        List<StateEntry> stateEntries = new ArrayList<>(stateEntryTable.size());
+        for (Object2IntMap.Entry<String> entry : stateEntryTable.object2IntEntrySet()) {
+            try {
+                BlockResult result = BlockArgumentParser.block(Registries.BLOCK, entry.getKey(),
+                        false);
+                stateEntries.add(new StateEntry(entry.getKey(), result, entry.getIntValue()));
+            } catch (CommandSyntaxException e) {
+                // Unknown blocks and properties are ignored, like any other unknown identifier
+                DataTables.LOGGER.warn("Ignoring invalid block state entry {}: {}", entry.getKey(),
+                        e.getMessage());
+            }
+        }
+
+        // Apply less specific entries first so that entries matching more properties win
+        stateEntries.sort(Comparator.comparingInt(StateEntry::specificity)
+                .thenComparing(StateEntry::key));
+        for (StateEntry stateEntry : stateEntries) {
+            Map<Property<?>, Comparable<?>> properties = stateEntry.result().properties();
+            for (BlockState state : stateEntry.result()
+                    .blockState()
+                    .getBlock()
+                    .getStateManager()
+                    .getStates()) {
+                if (matches(state, properties)) {
+                    values[Block.getRawIdFromState(state)] = stateEntry.value();
+                }
+            }
+        }
+        return values;
+    }
+
+    private static boolean matches(BlockState state,
+            Map<Property<?>, Comparable<?>> properties) {
+        for (Map.Entry<Property<?>, Comparable<?>> property : properties.entrySet()) {
+            if (!property.getValue().equals(state.get(property.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private int[] getRawIdValues(DataTableType queryType) {
+        // A table can be queried with any kind of element, but raw IDs only make sense for its
+        // own registry
+        if (this.type != queryType) {
+            return null;
+        }
+        return this.rawIdValues;
+    }
+
+    // Doesn't touch the cache or count as a query
+    int computeValue(Identifier id) {
+        // Specific items take precedence
+        if (elementEntryTable.containsKey(id)) {
+            return elementEntryTable.getInt(id);
+        }
+
+        // Tag values are only known once compiled
+        int[] values = this.rawIdValues;
+        DefaultedRegistry<?> registry = this.type.getRegistry();
+        if (values == null || registry == null) {
+            return defaultValue;
+        }
+        int rawId = getRawId(registry, id);
+        if (rawId >= 0 && rawId < values.length) {
+            return values[rawId];
+        }
+        return defaultValue;
+    }
+
+    private <T> int queryRawId(DefaultedRegistry<T> registry, int rawId) {
+        T element = registry.get(rawId);
+        return element == null ? defaultValue : lookup(registry.getId(element));
+    }
+
+    static <T> int getRawId(DefaultedRegistry<T> registry, Identifier id) {
+        // Defaulted registries return the default element for unknown IDs
+        if (!registry.containsId(id)) {
+            return -1;
+        }
+        return registry.getRawId(registry.get(id));
+    }
+
+    @FunctionalInterface
+    public interface PaletteValueConsumer {
+
+        void accept(int value, int count);
+    }
+
+    // How a typed derived table computes its values, which can only be done once its inputs are
+    // compiled with their tags expanded. Inputs are in the order of the expression's variables.
+    record Derivation(TableExpression expression, List<Identifier> inputs) {
+
+        static final Codec<Derivation> CODEC = RecordCodecBuilder.<Derivation>create(
+                instance -> instance.group(
+                        TableExpression.CODEC.fieldOf("expression")
+                                .forGetter(Derivation::expression),
+                        Identifier.CODEC.listOf().fieldOf("inputs").forGetter(Derivation::inputs)
+                ).apply(instance, Derivation::new)).validate(Derivation::validate);
+
+        Derivation {
+            inputs = List.copyOf(inputs);
+        }
+
+        private static DataResult<Derivation> validate(Derivation derivation) {
+            if (derivation.inputs().size() != derivation.expression().getVariables().size()) {
+                return DataResult.error(() -> "Expected one input for each variable of "
+                        + derivation.expression());
+            }
+            return DataResult.success(derivation);
+        }
+    }
+
+    private record DerivedValues(int[] rawIdValues, @Nullable int[] stateValues) {}
+
+    private record KeyedValues(int[] values, Identifier[] ids, boolean rawIds) {}
+
+    private record StateEntry(String key, BlockResult result, int value) {
+
+        int specificity() {
+            return result.properties().size();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.drakonkinst.datatables;
+
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.EventFactory;
+
+// Called whenever a new set of data tables is published, after tables are resolved on a reload
+// and after the client receives tables from the server. Listeners run on the thread that
+// published the tables, which is the server or client thread. The new tables are already
+// visible to queries by then.
+@FunctionalInterface
+public interface DataTableChangeCallback {
+
+    Event<DataTableChangeCallback> EVENT = EventFactory.createArrayBacked(
+            DataTableChangeCallback.class, listeners -> changes -> {
+                for (DataTableChangeCallback listener : listeners) {
+                    listener.onChanged(changes);
+                }
+            });
+
+    void onChanged(DataTableChanges changes);
+}
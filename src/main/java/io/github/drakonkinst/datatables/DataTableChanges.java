@@ -0,0 +1,227 @@
+package io.github.drakonkinst.datatables;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.item.Item;
+import net.minecraft.registry.DefaultedRegistry;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+// What changed when a new set of data tables was published, compared to the previous set. Tables
+// are only listed as changed if a query could now give a different result, so tables that were
+// rebuilt or recompiled with the same values are left out. Synced is true for tables received
+// from the server.
+public record DataTableChanges(long generation, boolean synced, Set<Identifier> added,
+                               Set<Identifier> removed, Map<Identifier, TableChanges> changed) {
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    // Published tables are never modified, since compiling returns a new table, so the previous
+    // snapshot's tables can be compared directly
+    static DataTableChanges compute(long generation, boolean synced,
+            Map<Identifier, DataTable> previous, Map<Identifier, DataTable> current) {
+        Set<Identifier> added = new HashSet<>();
+        Set<Identifier> removed = new HashSet<>();
+        Map<Identifier, TableChanges> changed = new HashMap<>();
+        for (Map.Entry<Identifier, DataTable> entry : current.entrySet()) {
+            DataTable previousTable = previous.get(entry.getKey());
+            if (previousTable == null) {
+                added.add(entry.getKey());
+                continue;
+            }
+            TableChanges tableChanges = TableChanges.compute(previousTable, entry.getValue());
+            if (tableChanges != null) {
+                changed.put(entry.getKey(), tableChanges);
+            }
+        }
+        for (Identifier id : previous.keySet()) {
+            if (!current.containsKey(id)) {
+                removed.add(id);
+            }
+        }
+        return new DataTableChanges(generation, synced, Set.copyOf(added), Set.copyOf(removed),
+                Map.copyOf(changed));
+    }
+
+    // Keys of one table whose values changed. For typed tables this covers every registered
+    // element, including ones affected by tag changes, and for item tables, every item whose
+    // component entries changed. If the table's type or its registry's size changed, every key
+    // of the old and new table is listed. If the default value changed, every key without its
+    // own entry changed as well. Tags lists tag entries whose own value changed, which is the
+    // only way to see tag changes in misc tables. State IDs, as in Block.STATE_IDS, are only
+    // listed for block tables.
+    public record TableChanges(boolean defaultValueChanged, Set<Identifier> keys,
+                               Set<Identifier> tags, IntList stateIds) {
+
+        // Returns null if nothing changed
+        @Nullable
+        static TableChanges compute(DataTable previous, DataTable table) {
+            if (previous == table) {
+                return null;
+            }
+
+            boolean defaultValueChanged = previous.getDefaultValue() != table.getDefaultValue();
+            Set<Identifier> keys = new HashSet<>();
+            Set<Identifier> tags = getChangedEntries(previous.getTagEntryTable(),
+                    table.getTagEntryTable());
+            IntList stateIds = new IntArrayList();
+            int[] previousValues = previous.getCompiledValues();
+            int[] rawIdValues = table.getCompiledValues();
+            DefaultedRegistry<?> registry = table.getType().getRegistry();
+            boolean sameLayout = previous.getType() == table.getType() && (registry == null
+                    || previousValues != null && rawIdValues != null
+                    && previousValues.length == rawIdValues.length);
+            if (!sameLayout) {
+                // Raw IDs no longer refer to the same elements, so nothing can be compared
+                addAllKeys(previous, keys);
+                addAllKeys(table, keys);
+                if (previous.getType() == DataTableType.BLOCK
+                        || table.getType() == DataTableType.BLOCK) {
+                    for (int stateId = 0; stateId < Block.STATE_IDS.size(); ++stateId) {
+                        stateIds.add(stateId);
+                    }
+                }
+                return new TableChanges(defaultValueChanged, Set.copyOf(keys), Set.copyOf(tags),
+                        stateIds);
+            }
+
+            if (registry != null && previousValues != rawIdValues) {
+                for (int rawId = 0; rawId < rawIdValues.length; ++rawId) {
+                    if (previousValues[rawId] != rawIdValues[rawId]) {
+                        keys.add(getId(registry, rawId));
+                    }
+                }
+            }
+
+            // Identifiers outside the registry are only found through element entries
+            Object2IntMap<Identifier> previousElements = previous.getElementEntryTable();
+            Object2IntMap<Identifier> elements = table.getElementEntryTable();
+            if (previousElements != elements) {
+                Set<Identifier> elementKeys = new HashSet<>(previousElements.keySet());
+                elementKeys.addAll(elements.keySet());
+                for (Identifier key : elementKeys) {
+                    if (registry != null && DataTable.getRawId(registry, key) >= 0) {
+                        continue;
+                    }
+                    int before = previousElements.containsKey(key) ? previousElements.getInt(key)
+                            : previous.getDefaultValue();
+                    int after = elements.containsKey(key) ? elements.getInt(key)
+                            : table.getDefaultValue();
+                    if (before != after) {
+                        keys.add(key);
+                    }
+                }
+            }
+
+            // Component entries only change what item stacks match, so list their items
+            for (String key : getChangedEntries(previous.getComponentEntryTable(),
+                    table.getComponentEntryTable())) {
+                int bracket = key.indexOf('[');
+                String itemKey = bracket < 0 ? key : key.substring(0, bracket);
+                if (itemKey.equals("*")) {
+                    addRegistryKeys(Registries.ITEM, Registries.ITEM.size(), keys);
+                } else if (itemKey.startsWith("#")) {
+                    Identifier id = Identifier.tryParse(itemKey.substring(1));
+                    if (id != null) {
+                        for (RegistryEntry<Item> member : Registries.ITEM.iterateEntries(
+                                TagKey.of(RegistryKeys.ITEM, id))) {
+                            keys.add(Registries.ITEM.getId(member.value()));
+                        }
+                    }
+                } else {
+                    Identifier id = Identifier.tryParse(itemKey);
+                    if (id != null) {
+                        keys.add(id);
+                    }
+                }
+            }
+
+            int[] previousStateValues = previous.getCompiledStateValues();
+            int[] stateValues = table.getCompiledStateValues();
+            if (table.getType() == DataTableType.BLOCK && previousValues != null
+                    && rawIdValues != null && (previousStateValues != stateValues
+                    || previousValues != rawIdValues)) {
+                for (int stateId = 0; stateId < Block.STATE_IDS.size(); ++stateId) {
+                    if (getStateValue(previousStateValues, previousValues, stateId,
+                            previous.getDefaultValue()) != getStateValue(stateValues,
+                            rawIdValues, stateId, table.getDefaultValue())) {
+                        stateIds.add(stateId);
+                    }
+                }
+            }
+
+            if (!defaultValueChanged && keys.isEmpty() && tags.isEmpty() && stateIds.isEmpty()) {
+                return null;
+            }
+            return new TableChanges(defaultValueChanged, Set.copyOf(keys), Set.copyOf(tags),
+                    stateIds);
+        }
+
+        // Keys added, removed, or given a different value
+        private static <K> Set<K> getChangedEntries(Object2IntMap<K> before,
+                Object2IntMap<K> after) {
+            if (before == after) {
+                return Set.of();
+            }
+            Set<K> changed = new HashSet<>();
+            for (Object2IntMap.Entry<K> entry : before.object2IntEntrySet()) {
+                if (!after.containsKey(entry.getKey())
+                        || after.getInt(entry.getKey()) != entry.getIntValue()) {
+                    changed.add(entry.getKey());
+                }
+            }
+            for (K key : after.keySet()) {
+                if (!before.containsKey(key)) {
+                    changed.add(key);
+                }
+            }
+            return changed;
+        }
+
+        private static void addAllKeys(DataTable table, Set<Identifier> keys) {
+            keys.addAll(table.getElementEntryTable().keySet());
+            DefaultedRegistry<?> registry = table.getType().getRegistry();
+            int[] values = table.getCompiledValues();
+            if (registry != null) {
+                addRegistryKeys(registry, values == null ? registry.size() : values.length,
+                        keys);
+            }
+        }
+
+        private static <T> void addRegistryKeys(DefaultedRegistry<T> registry, int size,
+                Set<Identifier> keys) {
+            for (int rawId = 0; rawId < size; ++rawId) {
+                keys.add(getId(registry, rawId));
+            }
+        }
+
+        private static <T> Identifier getId(DefaultedRegistry<T> registry, int rawId) {
+            T element = registry.get(rawId);
+            return element == null ? registry.getDefaultId() : registry.getId(element);
+        }
+
+        // Tables without state values give every state its block's value
+        private static int getStateValue(@Nullable int[] stateValues, int[] blockValues,
+                int stateId, int defaultValue) {
+            if (stateValues != null && stateId < stateValues.length) {
+                return stateValues[stateId];
+            }
+            BlockState state = Block.STATE_IDS.get(stateId);
+            int rawId = state == null ? -1 : Registries.BLOCK.getRawId(state.getBlock());
+            return rawId >= 0 && rawId < blockValues.length ? blockValues[rawId] : defaultValue;
+        }
+    }
+}
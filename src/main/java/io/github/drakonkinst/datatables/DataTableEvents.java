@@ -0,0 +1,53 @@
+package io.github.drakonkinst.datatables;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Flight Recorder events for the expensive parts of loading and syncing data tables. These cost
+// next to nothing unless a recording has them enabled.
+final class DataTableEvents {
+
+    private static final String CATEGORY = "Data Tables";
+
+    @Name("datatables.Load")
+    @Label("Load Data Tables")
+    @Category(CATEGORY)
+    static class Load extends Event {
+
+        @Label("Tables")
+        int tables;
+
+        @Label("Tables Parsed")
+        int parsed;
+    }
+
+    @Name("datatables.Resolve")
+    @Label("Resolve Data Tables")
+    @Category(CATEGORY)
+    static class Resolve extends Event {
+
+        @Label("Tables")
+        int tables;
+
+        @Label("Tables Rebuilt")
+        int rebuilt;
+    }
+
+    @Name("datatables.EncodeSyncPayload")
+    @Label("Encode Sync Payload")
+    @Category(CATEGORY)
+    static class EncodeSyncPayload extends Event {
+
+        @Label("Tables")
+        int tables;
+
+        @Label("Size")
+        @DataAmount
+        int bytes;
+    }
+
+    private DataTableEvents() {}
+}
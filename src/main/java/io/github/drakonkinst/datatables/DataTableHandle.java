@@ -0,0 +1,83 @@
+package io.github.drakonkinst.datatables;
+
+import java.util.Optional;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+// A reference to a data table by identifier that stays valid across reloads. Obtain one once with
+// DataTables.handle() and keep it; the registry re-binds it every time tables are published, so
+// queries go straight to the current table without looking it up.
+public final class DataTableHandle {
+
+    private final Identifier id;
+    private final DataTable fallback;
+    @Nullable
+    private volatile DataTable dataTable = null;
+
+    DataTableHandle(Identifier id, DataTable fallback) {
+        this.id = id;
+        this.fallback = fallback;
+    }
+
+    void bind(@Nullable DataTable dataTable) {
+        this.dataTable = dataTable;
+    }
+
+    public Identifier getId() {
+        return id;
+    }
+
+    // False until the table is loaded, or if the current data packs don't define it
+    public boolean isLoaded() {
+        return dataTable != null;
+    }
+
+    // Returns an empty table that always gives its default value if this table isn't loaded
+    public DataTable get() {
+        DataTable dataTable = this.dataTable;
+        return dataTable == null ? fallback : dataTable;
+    }
+
+    public Optional<DataTable> getOptional() {
+        return Optional.ofNullable(dataTable);
+    }
+
+    public int query(Identifier id) {
+        return get().query(id);
+    }
+
+    public int query(Item item) {
+        return get().query(item);
+    }
+
+    public int query(ItemStack stack) {
+        return get().query(stack);
+    }
+
+    public int query(Entity entity) {
+        return get().query(entity);
+    }
+
+    public int query(EntityType<?> entityType) {
+        return get().query(entityType);
+    }
+
+    public int query(BlockState blockState) {
+        return get().query(blockState);
+    }
+
+    public int query(Block block) {
+        return get().query(block);
+    }
+
+    @Override
+    public String toString() {
+        return "DataTableHandle[" + id + "]";
+    }
+}
@@ -0,0 +1,396 @@
+package io.github.drakonkinst.datatables;
+
+import io.github.drakonkinst.datatables.DataTable.Derivation;
+import io.github.drakonkinst.datatables.DataTableRegistry.DataTableEntry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.encoding.StringEncoding;
+import net.minecraft.network.encoding.VarInts;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.dynamic.Codecs.TagEntryId;
+
+// Compact binary encoding for syncing data tables. Every identifier is written once to a
+// dictionary with its namespace shared, then referenced by index. Integers use varints, with
+// zigzag encoding for values that may be negative.
+final class DataTablePacketCodecs {
+
+    private static final int MAX_STRING_LENGTH = Short.MAX_VALUE;
+    private static final DataTableType[] TYPES = DataTableType.values();
+    private static final ConflictPolicy[] CONFLICT_POLICIES = ConflictPolicy.values();
+    private static final CachePolicy[] CACHE_POLICIES = CachePolicy.values();
+
+    public static final PacketCodec<ByteBuf, DataTable> TABLE = new PacketCodec<>() {
+        @Override
+        public DataTable decode(ByteBuf buf) {
+            Identifier[] ids = readDictionary(buf);
+            return readTable(buf, ids);
+        }
+
+        @Override
+        public void encode(ByteBuf buf, DataTable table) {
+            Dictionary dictionary = new Dictionary();
+            dictionary.addAll(table);
+            dictionary.write(buf);
+            writeTable(buf, table, dictionary);
+        }
+    };
+
+    public static final PacketCodec<ByteBuf, Map<Identifier, DataTable>> TABLES = new PacketCodec<>() {
+        @Override
+        public Map<Identifier, DataTable> decode(ByteBuf buf) {
+            Identifier[] ids = readDictionary(buf);
+            int size = VarInts.read(buf);
+            Map<Identifier, DataTable> tables = new HashMap<>(size);
+            for (int i = 0; i < size; ++i) {
+                Identifier id = ids[VarInts.read(buf)];
+                tables.put(id, readTable(buf, ids));
+            }
+            return tables;
+        }
+
+        @Override
+        public void encode(ByteBuf buf, Map<Identifier, DataTable> tables) {
+            Dictionary dictionary = new Dictionary();
+            for (Map.Entry<Identifier, DataTable> entry : tables.entrySet()) {
+                dictionary.add(entry.getKey());
+                dictionary.addAll(entry.getValue());
+            }
+            dictionary.write(buf);
+            VarInts.write(buf, tables.size());
+            for (Map.Entry<Identifier, DataTable> entry : tables.entrySet()) {
+                VarInts.write(buf, dictionary.indexOf(entry.getKey()));
+                writeTable(buf, entry.getValue(), dictionary);
+            }
+        }
+    };
+
+    // One table in a sync payload, encoded with its own dictionary so that the server can encode
+    // each table once and build any response by concatenating the encoded tables
+    public static final PacketCodec<ByteBuf, Map.Entry<Identifier, DataTable>> SYNC_ENTRY = new PacketCodec<>() {
+        @Override
+        public Map.Entry<Identifier, DataTable> decode(ByteBuf buf) {
+            Identifier id = Identifier.PACKET_CODEC.decode(buf);
+            return Map.entry(id, TABLE.decode(buf));
+        }
+
+        @Override
+        public void encode(ByteBuf buf, Map.Entry<Identifier, DataTable> entry) {
+            Identifier.PACKET_CODEC.encode(buf, entry.getKey());
+            TABLE.encode(buf, entry.getValue());
+        }
+    };
+
+    public static final PacketCodec<ByteBuf, Map<Identifier, DataTable>> SYNC_TABLES = new PacketCodec<>() {
+        @Override
+        public Map<Identifier, DataTable> decode(ByteBuf buf) {
+            int size = VarInts.read(buf);
+            Map<Identifier, DataTable> tables = new HashMap<>(size);
+            for (int i = 0; i < size; ++i) {
+                Map.Entry<Identifier, DataTable> entry = SYNC_ENTRY.decode(buf);
+                tables.put(entry.getKey(), entry.getValue());
+            }
+            return tables;
+        }
+
+        @Override
+        public void encode(ByteBuf buf, Map<Identifier, DataTable> tables) {
+            VarInts.write(buf, tables.size());
+            for (Map.Entry<Identifier, DataTable> entry : tables.entrySet()) {
+                SYNC_ENTRY.encode(buf, entry);
+            }
+        }
+    };
+
+    public static final PacketCodec<ByteBuf, Map<Identifier, List<String>>> COLUMNS = PacketCodecs.map(
+            HashMap::new, Identifier.PACKET_CODEC,
+            PacketCodecs.STRING.collect(PacketCodecs.toList()));
+
+    public static final PacketCodec<ByteBuf, SyncManifestPayload> MANIFEST = PacketCodec.tuple(
+            PacketCodecs.map(HashMap::new, Identifier.PACKET_CODEC, PacketCodecs.LONG),
+            SyncManifestPayload::contentHashes, COLUMNS, SyncManifestPayload::columns,
+            SyncManifestPayload::new);
+
+    // Unresolved entries as loaded from JSON, which are only saved by the compiled table cache so
+    // that later reloads can reuse them. Identifiers are written in full since this isn't synced.
+    public static final PacketCodec<ByteBuf, DataTableEntry> ENTRY = new PacketCodec<>() {
+        @Override
+        public DataTableEntry decode(ByteBuf buf) {
+            DataTableType type = TYPES[buf.readUnsignedByte()];
+            ConflictPolicy conflictPolicy = CONFLICT_POLICIES[buf.readUnsignedByte()];
+            CachePolicy cachePolicy = CACHE_POLICIES[buf.readUnsignedByte()];
+            int cacheSize = readCacheSize(buf);
+            int defaultValue = readSigned(buf);
+            List<Identifier> parents = readIdentifiers(buf);
+            List<Identifier> tagPriority = readIdentifiers(buf);
+
+            int entrySize = VarInts.read(buf);
+            Map<TagEntryId, Integer> entries = new HashMap<>(entrySize);
+            for (int i = 0; i < entrySize; ++i) {
+                boolean tag = buf.readBoolean();
+                Identifier id = Identifier.PACKET_CODEC.decode(buf);
+                entries.put(new TagEntryId(id, tag), readSigned(buf));
+            }
+            Map<String, Integer> stateEntries = new HashMap<>(readStringEntries(buf));
+            Map<String, Integer> componentEntries = new HashMap<>(readStringEntries(buf));
+
+            int inputSize = VarInts.read(buf);
+            Map<String, Identifier> inputs = new HashMap<>(inputSize);
+            for (int i = 0; i < inputSize; ++i) {
+                String variable = StringEncoding.decode(buf, MAX_STRING_LENGTH);
+                inputs.put(variable, Identifier.PACKET_CODEC.decode(buf));
+            }
+            TableExpression expression = null;
+            if (buf.readBoolean()) {
+                expression = TableExpression.parse(StringEncoding.decode(buf, MAX_STRING_LENGTH))
+                        .getOrThrow();
+            }
+            return new DataTableEntry(type, parents, defaultValue, entries, conflictPolicy,
+                    tagPriority, stateEntries, componentEntries, cachePolicy, cacheSize, inputs,
+                    expression);
+        }
+
+        @Override
+        public void encode(ByteBuf buf, DataTableEntry entry) {
+            buf.writeByte(entry.type().ordinal());
+            buf.writeByte(entry.conflictPolicy().ordinal());
+            buf.writeByte(entry.cachePolicy().ordinal());
+            VarInts.write(buf, entry.cacheSize());
+            writeSigned(buf, entry.defaultValue());
+            writeIdentifiers(buf, entry.parents());
+            writeIdentifiers(buf, entry.tagPriority());
+
+            VarInts.write(buf, entry.entries().size());
+            for (Map.Entry<TagEntryId, Integer> tableEntry : entry.entries().entrySet()) {
+                buf.writeBoolean(tableEntry.getKey().tag());
+                Identifier.PACKET_CODEC.encode(buf, tableEntry.getKey().id());
+                writeSigned(buf, tableEntry.getValue());
+            }
+            writeStringEntries(buf, new Object2IntOpenHashMap<>(entry.stateEntries()));
+            writeStringEntries(buf, new Object2IntOpenHashMap<>(entry.componentEntries()));
+
+            VarInts.write(buf, entry.inputs().size());
+            for (Map.Entry<String, Identifier> input : entry.inputs().entrySet()) {
+                StringEncoding.encode(buf, input.getKey(), MAX_STRING_LENGTH);
+                Identifier.PACKET_CODEC.encode(buf, input.getValue());
+            }
+            TableExpression expression = entry.expression();
+            buf.writeBoolean(expression != null);
+            if (expression != null) {
+                StringEncoding.encode(buf, expression.getSource(), MAX_STRING_LENGTH);
+            }
+        }
+    };
+
+    static <V> byte[] encodeToBytes(PacketCodec<ByteBuf, V> codec, V value) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            codec.encode(buf, value);
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void writeTable(ByteBuf buf, DataTable table, Dictionary dictionary) {
+        buf.writeByte(table.getType().ordinal());
+        buf.writeByte(table.getConflictPolicy().ordinal());
+        buf.writeByte(table.getCachePolicy().ordinal());
+        VarInts.write(buf, table.getCacheSize());
+        writeSigned(buf, table.getDefaultValue());
+        writeEntries(buf, table.getElementEntryTable(), dictionary);
+        writeEntries(buf, table.getTagEntryTable(), dictionary);
+
+        List<Identifier> tagPriority = table.getTagPriority();
+        VarInts.write(buf, tagPriority.size());
+        for (Identifier id : tagPriority) {
+            VarInts.write(buf, dictionary.indexOf(id));
+        }
+
+        writeStringEntries(buf, table.getStateEntryTable());
+        writeStringEntries(buf, table.getComponentEntryTable());
+
+        Derivation derivation = table.getDerivation();
+        buf.writeBoolean(derivation != null);
+        if (derivation != null) {
+            StringEncoding.encode(buf, derivation.expression().getSource(), MAX_STRING_LENGTH);
+            VarInts.write(buf, derivation.inputs().size());
+            for (Identifier id : derivation.inputs()) {
+                VarInts.write(buf, dictionary.indexOf(id));
+            }
+        }
+    }
+
+    private static DataTable readTable(ByteBuf buf, Identifier[] ids) {
+        DataTableType type = TYPES[buf.readUnsignedByte()];
+        ConflictPolicy conflictPolicy = CONFLICT_POLICIES[buf.readUnsignedByte()];
+        CachePolicy cachePolicy = CACHE_POLICIES[buf.readUnsignedByte()];
+        int cacheSize = readCacheSize(buf);
+        int defaultValue = readSigned(buf);
+        Object2IntMap<Identifier> elementEntryTable = readEntries(buf, ids);
+        Object2IntMap<Identifier> tagEntryTable = readEntries(buf, ids);
+
+        int tagPrioritySize = VarInts.read(buf);
+        List<Identifier> tagPriority = new ArrayList<>(tagPrioritySize);
+        for (int i = 0; i < tagPrioritySize; ++i) {
+            tagPriority.add(ids[VarInts.read(buf)]);
+        }
+
+        Object2IntMap<String> stateEntryTable = readStringEntries(buf);
+        Object2IntMap<String> componentEntryTable = readStringEntries(buf);
+
+        Derivation derivation = null;
+        if (buf.readBoolean()) {
+            TableExpression expression = TableExpression.parse(
+                    StringEncoding.decode(buf, MAX_STRING_LENGTH)).getOrThrow();
+            int inputSize = VarInts.read(buf);
+            List<Identifier> inputs = new ArrayList<>(inputSize);
+            for (int i = 0; i < inputSize; ++i) {
+                inputs.add(ids[VarInts.read(buf)]);
+            }
+            derivation = new Derivation(expression, inputs);
+        }
+
+        return new DataTable(type, defaultValue, elementEntryTable, tagEntryTable,
+                conflictPolicy, tagPriority, stateEntryTable, componentEntryTable, cachePolicy,
+                cacheSize, derivation);
+    }
+
+    private static void writeEntries(ByteBuf buf, Object2IntMap<Identifier> entries,
+            Dictionary dictionary) {
+        VarInts.write(buf, entries.size());
+        for (Object2IntMap.Entry<Identifier> entry : entries.object2IntEntrySet()) {
+            VarInts.write(buf, dictionary.indexOf(entry.getKey()));
+            writeSigned(buf, entry.getIntValue());
+        }
+    }
+
+    private static Object2IntMap<Identifier> readEntries(ByteBuf buf, Identifier[] ids) {
+        int size = VarInts.read(buf);
+        Object2IntMap<Identifier> entries = new Object2IntOpenHashMap<>(size);
+        for (int i = 0; i < size; ++i) {
+            Identifier id = ids[VarInts.read(buf)];
+            entries.put(id, readSigned(buf));
+        }
+        return entries;
+    }
+
+    private static void writeStringEntries(ByteBuf buf, Object2IntMap<String> entries) {
+        VarInts.write(buf, entries.size());
+        for (Object2IntMap.Entry<String> entry : entries.object2IntEntrySet()) {
+            StringEncoding.encode(buf, entry.getKey(), MAX_STRING_LENGTH);
+            writeSigned(buf, entry.getIntValue());
+        }
+    }
+
+    private static Object2IntMap<String> readStringEntries(ByteBuf buf) {
+        int size = VarInts.read(buf);
+        Object2IntMap<String> entries = new Object2IntOpenHashMap<>(size);
+        for (int i = 0; i < size; ++i) {
+            String key = StringEncoding.decode(buf, MAX_STRING_LENGTH);
+            entries.put(key, readSigned(buf));
+        }
+        return entries;
+    }
+
+    private static void writeIdentifiers(ByteBuf buf, List<Identifier> ids) {
+        VarInts.write(buf, ids.size());
+        for (Identifier id : ids) {
+            Identifier.PACKET_CODEC.encode(buf, id);
+        }
+    }
+
+    private static List<Identifier> readIdentifiers(ByteBuf buf) {
+        int size = VarInts.read(buf);
+        List<Identifier> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            ids.add(Identifier.PACKET_CODEC.decode(buf));
+        }
+        return ids;
+    }
+
+    private static Identifier[] readDictionary(ByteBuf buf) {
+        String[] namespaces = new String[VarInts.read(buf)];
+        for (int i = 0; i < namespaces.length; ++i) {
+            namespaces[i] = StringEncoding.decode(buf, MAX_STRING_LENGTH);
+        }
+        Identifier[] ids = new Identifier[VarInts.read(buf)];
+        for (int i = 0; i < ids.length; ++i) {
+            String namespace = namespaces[VarInts.read(buf)];
+            ids[i] = Identifier.of(namespace, StringEncoding.decode(buf, MAX_STRING_LENGTH));
+        }
+        return ids;
+    }
+
+    // Checked like the JSON codecs, since an oversized cache would be allocated by the receiver
+    private static int readCacheSize(ByteBuf buf) {
+        int cacheSize = VarInts.read(buf);
+        if (cacheSize < 1 || cacheSize > CachePolicy.MAX_SIZE) {
+            throw new DecoderException("Invalid cache size " + cacheSize);
+        }
+        return cacheSize;
+    }
+
+    private static void writeSigned(ByteBuf buf, int value) {
+        VarInts.write(buf, (value << 1) ^ (value >> 31));
+    }
+
+    private static int readSigned(ByteBuf buf) {
+        int value = VarInts.read(buf);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Dictionary {
+
+        // Linked so that indices match the order identifiers are written in
+        private final Object2IntMap<String> namespaces = new Object2IntLinkedOpenHashMap<>();
+        private final Object2IntMap<Identifier> ids = new Object2IntLinkedOpenHashMap<>();
+
+        void add(Identifier id) {
+            if (!ids.containsKey(id)) {
+                ids.put(id, ids.size());
+                if (!namespaces.containsKey(id.getNamespace())) {
+                    namespaces.put(id.getNamespace(), namespaces.size());
+                }
+            }
+        }
+
+        void addAll(DataTable table) {
+            table.getElementEntryTable().keySet().forEach(this::add);
+            table.getTagEntryTable().keySet().forEach(this::add);
+            table.getTagPriority().forEach(this::add);
+            Derivation derivation = table.getDerivation();
+            if (derivation != null) {
+                derivation.inputs().forEach(this::add);
+            }
+        }
+
+        int indexOf(Identifier id) {
+            return ids.getInt(id);
+        }
+
+        void write(ByteBuf buf) {
+            VarInts.write(buf, namespaces.size());
+            for (String namespace : namespaces.keySet()) {
+                StringEncoding.encode(buf, namespace, MAX_STRING_LENGTH);
+            }
+            VarInts.write(buf, ids.size());
+            for (Identifier id : ids.keySet()) {
+                VarInts.write(buf, namespaces.getInt(id.getNamespace()));
+                StringEncoding.encode(buf, id.getPath(), MAX_STRING_LENGTH);
+            }
+        }
+    }
+
+    private DataTablePacketCodecs() {}
+}
@@ -1,33 +1,58 @@
 package io.github.drakonkinst.datatables;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
+import com.mojang.datafixers.util.Pair;
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
 import com.mojang.serialization.JsonOps;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
-import com.mojang.serialization.codecs.UnboundedMapCodec;
+import io.netty.buffer.ByteBuf;
 import it.unimi.dsi.fastutil.objects.Object2IntArrayMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
-import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import net.fabricmc.fabric.api.resource.SimpleResourceReloadListener;
+import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.command.argument.BlockArgumentParser;
 import net.minecraft.entity.EntityType;
 import net.minecraft.item.Item;
+import net.minecraft.network.codec.PacketCodec;
 import net.minecraft.registry.Registries;
 import net.minecraft.registry.RegistryOps;
 import net.minecraft.registry.RegistryWrapper;
@@ -37,31 +62,87 @@ import net.minecraft.resource.ResourceFinder;
 import net.minecraft.resource.ResourceManager;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.JsonHelper;
-import net.minecraft.util.dynamic.Codecs;
+import net.minecraft.util.Util;
 import net.minecraft.util.dynamic.Codecs.TagEntryId;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-public class DataTableRegistry implements SimpleSynchronousResourceReloadListener {
+public class DataTableRegistry implements
+        SimpleResourceReloadListener<DataTableRegistry.LoadResult> {
 
     public static final String RESOURCE_FOLDER = "data_tables";
     public static final Identifier ID = DataTables.id(RESOURCE_FOLDER);
-    private static final UnboundedMapCodec<TagEntryId, Integer> ENTRIES_CODEC = Codec.unboundedMap(
-            Codecs.TAG_ENTRY_ID, Codec.INT);
+    // Keys are either element or tag identifiers, or block states such as
+    // "minecraft:furnace[lit=true]", which are kept apart since they aren't valid identifiers
+    private static final Codec<Pair<Map<TagEntryId, Integer>, Map<String, Integer>>> ENTRIES_CODEC = Codec.unboundedMap(
+            Codec.STRING, Codec.INT).comapFlatMap(DataTableRegistry::splitEntries, DataTableRegistry::joinEntries);
     private static final Codec<List<Identifier>> PARENTS_CODEC = Identifier.CODEC.listOf();
+    private static final Codec<List<String>> COLUMNS_CODEC = Codec.STRING.validate(
+            column -> Identifier.isPathValid(column) ? DataResult.success(column)
+                    : DataResult.error(() -> "Invalid column name: " + column)).listOf();
+    private static final Codec<Map<String, List<Integer>>> ROWS_CODEC = Codec.unboundedMap(
+            Codec.STRING, Codec.INT.listOf());
+    // Maps the variables of a derived table's expression to the tables they read from
+    private static final Codec<Map<String, Identifier>> INPUTS_CODEC = Codec.unboundedMap(
+            Codec.STRING, Identifier.CODEC);
     private static final DataTableType DEFAULT_DATA_TABLE_TYPE = DataTableType.MISC;
     private static final int DEFAULT_DEFAULT_VALUE = 0;
+    private static final ConflictPolicy DEFAULT_CONFLICT_POLICY = ConflictPolicy.FIRST;
     private static final DataTable DUMMY = new DataTable(DEFAULT_DATA_TABLE_TYPE, DEFAULT_DEFAULT_VALUE,
             new Object2IntArrayMap<>(), new Object2IntArrayMap<>());
     public static final Codec<DataTableEntry> DATA_TABLE_ENTRY_CODEC = RecordCodecBuilder.create(instance -> instance.group(
            DataTableType.CODEC.optionalFieldOf("type", DEFAULT_DATA_TABLE_TYPE).forGetter(DataTableEntry::type),
            PARENTS_CODEC.optionalFieldOf("parents", Collections.emptyList()).forGetter(DataTableEntry::parents),
            Codec.INT.optionalFieldOf("default_value", DEFAULT_DEFAULT_VALUE).forGetter(DataTableEntry::defaultValue),
-           ENTRIES_CODEC.optionalFieldOf("entries", Collections.emptyMap()).forGetter(DataTableEntry::entries)
-    ).apply(instance, DataTableEntry::new));
+           ENTRIES_CODEC.optionalFieldOf("entries", Pair.of(Collections.emptyMap(), Collections.emptyMap())).forGetter(entry -> Pair.of(entry.entries(), entry.bracketedEntries())),
+           ConflictPolicy.CODEC.optionalFieldOf("conflict_policy", DEFAULT_CONFLICT_POLICY).forGetter(DataTableEntry::conflictPolicy),
+           PARENTS_CODEC.optionalFieldOf("tag_priority", Collections.emptyList()).forGetter(DataTableEntry::tagPriority),
+           CachePolicy.CODEC.optionalFieldOf("cache").forGetter(entry -> Optional.of(entry.cachePolicy())),
+           CachePolicy.SIZE_CODEC.optionalFieldOf("cache_size", CachePolicy.DEFAULT_SIZE).forGetter(DataTableEntry::cacheSize),
+           INPUTS_CODEC.optionalFieldOf("inputs", Collections.emptyMap()).forGetter(DataTableEntry::inputs),
+           TableExpression.CODEC.optionalFieldOf("expression").forGetter(entry -> Optional.ofNullable(entry.expression()))
+    ).apply(instance, (type, parents, defaultValue, entries, conflictPolicy, tagPriority, cachePolicy, cacheSize, inputs, expression) -> createEntry(
+            type, parents, defaultValue, entries.getFirst(), conflictPolicy, tagPriority, entries.getSecond(),
+            cachePolicy.orElseGet(() -> CachePolicy.forType(type)), cacheSize, inputs, expression.orElse(null)))
+    ).validate(DataTableRegistry::validateEntry);
 
-    private final Map<Identifier, DataTable> dataTables = new HashMap<>();
-    private final Map<Identifier, DataTableEntry> unresolved = new HashMap<>();
+    // Readers always see a complete set of tables, which is only ever replaced as a whole
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Every handle given out so far, which are re-bound whenever a snapshot is published. Binding
+    // is guarded by the map itself so that a new handle can't miss a publish.
+    private final Map<Identifier, DataTableHandle> handles = new HashMap<>();
+    // The most recently loaded entries are kept so that the next reload can reuse them
+    private Map<Identifier, DataTableEntry> unresolved = new HashMap<>();
+    private Map<Identifier, LoadedTable> loaded = new HashMap<>();
+    // Column names of every multi-column table
+    private Map<Identifier, List<String>> columns = new HashMap<>();
+    // Tables whose resource changed since they were last resolved, including removed tables
+    private Set<Identifier> changed = new HashSet<>();
+    private boolean pendingResolve = false;
+    // Resolved tables are saved here so the next start can skip loading them from JSON. Created
+    // on the first reload, since the game directory is only known in a running game.
+    @Nullable
+    private CompiledTableCache compiledCache = null;
+    @Nullable
+    private HashCode packFingerprint = null;
+    // Fingerprint of the packs the compiled table cache was last read from or saved for
+    @Nullable
+    private HashCode savedFingerprint = null;
+    // Tables loaded from the compiled table cache, which only need to be compiled
+    @Nullable
+    private Map<Identifier, DataTable> cachedTables = null;
+    @Nullable
+    private volatile byte[] encodedManifest = null;
+    private final AtomicLong payloadsEncoded = new AtomicLong();
+    private final AtomicLong payloadsReused = new AtomicLong();
+    private final AtomicLong bytesReused = new AtomicLong();
+    private final AtomicLong bytesEncoded = new AtomicLong();
+    private final AtomicLong encodeTime = new AtomicLong();
+    // Timings of the most recent load and resolve
+    private volatile long loadTime = 0L;
+    private volatile int tablesParsed = 0;
+    private volatile long resolveTime = 0L;
+    private volatile int tablesRebuilt = 0;
     @Nullable
     private RegistryWrapper.WrapperLookup registries;
     private boolean resolved = false;
@@ -69,85 +150,765 @@ public class DataTableRegistry implements SimpleSynchronousResourceReloadListene
     protected DataTableRegistry() {}
 
     @Override
-    public void reload(ResourceManager manager) {
-        this.clear();
-        this.loadIntoMap(manager, this.unresolved);
-        DataTables.LOGGER.info("Loaded {} data tables", this.unresolved.size());
+    public CompletableFuture<LoadResult> load(ResourceManager manager, Executor executor) {
+        if (this.compiledCache == null) {
+            this.compiledCache = new CompiledTableCache(FabricLoader.getInstance()
+                    .getGameDir()
+                    .resolve(".cache")
+                    .resolve(DataTables.MOD_ID)
+                    .resolve("compiled_tables.bin"));
+        }
+        return this.loadIntoMap(manager, executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> apply(LoadResult data, ResourceManager manager,
+            Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            this.unresolved = data.entries();
+            this.loaded = data.loaded();
+            this.columns = data.columns();
+            this.changed.addAll(data.changed());
+            this.packFingerprint = data.packFingerprint();
+            this.cachedTables = data.cachedTables();
+            this.pendingResolve = true;
+            this.resolved = false;
+            if (this.cachedTables == null) {
+                DataTables.LOGGER.info("Loaded {} data tables ({} changed)",
+                        this.unresolved.size(), data.changed().size());
+            }
+        }, executor);
     }
 
     public void resolve() {
-        new Resolver(this.unresolved).resolve(this.dataTables::put);
+        DataTableEvents.Resolve event = new DataTableEvents.Resolve();
+        event.begin();
+        long startTime = System.nanoTime();
+        int rebuilt = 0;
+        Map<Identifier, DataTable> dataTables = this.snapshot.dataTables();
+        Map<Identifier, DataTable> previous = this.snapshot.dataTables();
+        boolean save = false;
+        if (this.pendingResolve && this.cachedTables != null) {
+            dataTables = this.cachedTables;
+            this.cachedTables = null;
+            this.savedFingerprint = this.packFingerprint;
+        } else if (this.pendingResolve) {
+            Set<Identifier> dirty = this.collectDirty();
+            Map<Identifier, DataTable> resolvedTables = new HashMap<>();
+            new Resolver(this.unresolved).resolve(dirty::contains, resolvedTables::put);
+
+            // Unchanged tables keep their existing instance
+            for (Identifier id : this.unresolved.keySet()) {
+                DataTable existing = dataTables.get(id);
+                if (!dirty.contains(id) && existing != null) {
+                    resolvedTables.put(id, existing);
+                }
+            }
+            dataTables = resolvedTables;
+            rebuilt = dirty.size();
+            DataTables.LOGGER.info("Rebuilt {} of {} data tables", dirty.size(),
+                    dataTables.size());
+            // Nothing to save if the cache already holds these exact tables
+            save = this.packFingerprint != null && (!dirty.isEmpty()
+                    || !this.packFingerprint.equals(this.savedFingerprint));
+        }
+        // Tags may have changed even if no tables were loaded, such as on the client
+        dataTables = this.compileAll(dataTables, id -> true);
+        this.publish(dataTables, this.columns);
         this.markResolved();
-        DataTables.LOGGER.info("Resolved {} data tables", this.dataTables.size());
+        this.resolveTime = System.nanoTime() - startTime;
+        this.tablesRebuilt = rebuilt;
+        event.tables = dataTables.size();
+        event.rebuilt = rebuilt;
+        event.commit();
+        DataTables.LOGGER.info("Resolved {} data tables in {} ms", dataTables.size(),
+                toMillis(this.resolveTime));
+        this.fireChanges(previous, false);
+        CompiledTableCache compiledCache = this.compiledCache;
+        if (save && compiledCache != null) {
+            // Tables are immutable once published, so they can be encoded off-thread
+            HashCode fingerprint = this.packFingerprint;
+            this.savedFingerprint = fingerprint;
+            Map<Identifier, DataTable> savedTables = this.snapshot.dataTables();
+            Map<Identifier, ParsedTable> parsedTables = new HashMap<>();
+            for (LoadedTable loadedTable : this.loaded.values()) {
+                parsedTables.put(loadedTable.id(), loadedTable.table());
+            }
+            Util.getIoWorkerExecutor()
+                    .execute(() -> compiledCache.write(fingerprint, savedTables, parsedTables));
+        }
+    }
+
+    // Compiling returns new instances and leaves the given tables untouched, so queries keep
+    // seeing the current snapshot until the compiled tables are published together. Derived
+    // tables are compiled after their inputs, and again whenever one of their inputs is.
+    private Map<Identifier, DataTable> compileAll(Map<Identifier, DataTable> dataTables,
+            Predicate<Identifier> filter) {
+        Map<Identifier, DataTable> compiled = new HashMap<>(dataTables.size());
+        Set<Identifier> recompiled = new HashSet<>();
+        Set<Identifier> visited = new HashSet<>();
+        for (Identifier id : dataTables.keySet()) {
+            this.compileTable(id, dataTables, filter, compiled, recompiled, visited);
+        }
+        return compiled;
+    }
+
+    private void compileTable(Identifier id, Map<Identifier, DataTable> dataTables,
+            Predicate<Identifier> filter, Map<Identifier, DataTable> compiled,
+            Set<Identifier> recompiled, Set<Identifier> visited) {
+        DataTable dataTable = dataTables.get(id);
+        // Cycles are rejected while resolving, but synced tables aren't resolved here
+        if (dataTable == null || !visited.add(id)) {
+            return;
+        }
+        boolean inputRecompiled = false;
+        DataTable.Derivation derivation = dataTable.getDerivation();
+        if (derivation != null) {
+            for (Identifier inputId : derivation.inputs()) {
+                this.compileTable(inputId, dataTables, filter, compiled, recompiled, visited);
+                inputRecompiled |= recompiled.contains(inputId);
+            }
+        }
+        if (filter.test(id) || inputRecompiled) {
+            dataTable = dataTable.compile(this.registries, compiled::get);
+            recompiled.add(id);
+        }
+        compiled.put(id, dataTable);
+    }
+
+    // Swaps in a new snapshot, which must already be compiled
+    private void publish(Map<Identifier, DataTable> dataTables,
+            Map<Identifier, List<String>> columns) {
+        this.invalidateEncodedPayloads();
+        Map<Identifier, MultiColumnTable> multiColumnTables = new HashMap<>();
+        for (Entry<Identifier, List<String>> entry : columns.entrySet()) {
+            MultiColumnTable multiColumnTable = createMultiColumnTable(entry.getKey(),
+                    entry.getValue(), dataTables);
+            if (multiColumnTable != null) {
+                multiColumnTables.put(entry.getKey(), multiColumnTable);
+            }
+        }
+        Snapshot snapshot = new Snapshot(Map.copyOf(dataTables), Map.copyOf(columns),
+                Map.copyOf(multiColumnTables), this.snapshot.generation() + 1,
+                new ConcurrentHashMap<>());
+        synchronized (this.handles) {
+            this.snapshot = snapshot;
+            for (DataTableHandle handle : this.handles.values()) {
+                handle.bind(snapshot.dataTables().get(handle.getId()));
+            }
+        }
+    }
+
+    @Nullable
+    private static MultiColumnTable createMultiColumnTable(Identifier id, List<String> columns,
+            Map<Identifier, DataTable> dataTables) {
+        List<DataTable> columnTables = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            DataTable columnTable = dataTables.get(MultiColumnTable.getColumnId(id, column));
+            if (columnTable == null) {
+                DataTables.LOGGER.warn("Skipping multi-column table {} since column {} failed to load",
+                        id, column);
+                return null;
+            }
+            columnTables.add(columnTable);
+        }
+        return new MultiColumnTable(id, columns, columnTables);
     }
 
     protected void markResolved() {
-        this.unresolved.clear();
+        this.changed = new HashSet<>();
+        this.pendingResolve = false;
         this.resolved = true;
     }
 
-    private void loadIntoMap(ResourceManager manager, Map<Identifier, DataTableEntry> map) {
+    // Changed tables along with every table that inherits from them through parents, or is
+    // derived from them
+    private Set<Identifier> collectDirty() {
+        Map<Identifier, List<Identifier>> children = new HashMap<>();
+        for (Entry<Identifier, DataTableEntry> entry : this.unresolved.entrySet()) {
+            for (Identifier parentId : entry.getValue().dependencies()) {
+                children.computeIfAbsent(parentId, k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        Set<Identifier> dirty = new HashSet<>();
+        Deque<Identifier> toVisit = new ArrayDeque<>(this.changed);
+        // Tables that never resolved successfully have no instance to keep
+        for (Identifier id : this.unresolved.keySet()) {
+            if (!this.snapshot.dataTables().containsKey(id)) {
+                toVisit.add(id);
+            }
+        }
+        while (!toVisit.isEmpty()) {
+            Identifier id = toVisit.pop();
+            if (dirty.add(id)) {
+                toVisit.addAll(children.getOrDefault(id, List.of()));
+            }
+        }
+        return dirty;
+    }
+
+    // Reads and fingerprints every data table in parallel on the given executor, then parses the
+    // changed ones. Tables whose fingerprint matches the previous load reuse the previously
+    // parsed entry. On the first load, the compiled table cache is used instead if it was saved
+    // for the exact same resources.
+    private CompletableFuture<LoadResult> loadIntoMap(ResourceManager manager,
+            Executor executor) {
+        Map<Identifier, DataTableEntry> previousEntries = this.unresolved;
+        Map<Identifier, LoadedTable> previousLoaded = this.loaded;
+        CompiledTableCache compiledCache = this.compiledCache;
+        DataTableEvents.Load event = new DataTableEvents.Load();
+        event.begin();
+        long startTime = System.nanoTime();
         ResourceFinder finder = ResourceFinder.json(RESOURCE_FOLDER);
 
         assert this.registries != null;
         RegistryOps<JsonElement> ops = RegistryOps.of(JsonOps.INSTANCE, this.registries);
 
+        List<CompletableFuture<ReadTable>> reads = new ArrayList<>();
         for (Map.Entry<Identifier, Resource> entry : finder.findResources(manager).entrySet()) {
             Identifier resourcePath = entry.getKey();
             Resource resource = entry.getValue();
-
             Identifier resourceId = finder.toResourceId(resourcePath);
 
-            try (BufferedReader reader = resource.getReader()) {
-                List<Identifier> parents = List.of();
-                Map<TagEntryId, Integer> entries = new HashMap<>();
-                DataTableType type = DataTableType.MISC;
+            reads.add(CompletableFuture.supplyAsync(() -> {
+                try (InputStream stream = resource.getInputStream()) {
+                    byte[] bytes = stream.readAllBytes();
+                    return new ReadTable(resourceId, resourcePath, bytes,
+                            new Fingerprint(resource.getPackId(),
+                                    Hashing.murmur3_128().hashBytes(bytes)));
+                } catch (Exception exception) {
+                    DataTables.LOGGER.error("Couldn't read data table {} from {} in data pack {}",
+                            resourceId, resourcePath, resource.getPackId(), exception);
+                    return null;
+                }
+            }, executor));
+        }
+
+        return CompletableFuture.allOf(reads.toArray(CompletableFuture[]::new)).thenCompose(v -> {
+            List<ReadTable> readTables = new ArrayList<>(reads.size());
+            for (CompletableFuture<ReadTable> read : reads) {
+                ReadTable readTable = read.join();
+                if (readTable != null) {
+                    readTables.add(readTable);
+                }
+            }
+            HashCode packFingerprint = computePackFingerprint(readTables);
+
+            // Without previously parsed tables, everything would have to be parsed anyway
+            if (previousLoaded.isEmpty() && compiledCache != null) {
+                CompiledTableCache.CachedTables cached = compiledCache.read(packFingerprint);
+                List<LoadedTable> cachedLoaded = cached == null ? null
+                        : getCachedLoadedTables(readTables, cached);
+                if (cachedLoaded != null) {
+                    LoadResult result = collectLoadResult(cachedLoaded, previousEntries,
+                            packFingerprint, cached.dataTables());
+                    this.loadTime = System.nanoTime() - startTime;
+                    this.tablesParsed = 0;
+                    event.tables = cached.dataTables().size();
+                    event.commit();
+                    DataTables.LOGGER.info("Loaded {} compiled data tables from cache in {} ms",
+                            cached.dataTables().size(), toMillis(this.loadTime));
+                    return CompletableFuture.completedFuture(result);
+                }
+            }
+
+            // Total time spent parsing across all threads, which is roughly what a sequential
+            // load would take
+            AtomicLong parseTime = new AtomicLong();
+            List<CompletableFuture<LoadedTable>> futures = new ArrayList<>(readTables.size());
+            for (ReadTable readTable : readTables) {
+                Identifier resourceId = readTable.id();
+                Fingerprint fingerprint = readTable.fingerprint();
+                LoadedTable previous = previousLoaded.get(resourceId);
+                if (previous != null && fingerprint.equals(previous.fingerprint())) {
+                    futures.add(CompletableFuture.completedFuture(
+                            new LoadedTable(resourceId, previous.table(), fingerprint, false)));
+                    continue;
+                }
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    long parseStartTime = System.nanoTime();
+                    try {
+                        return new LoadedTable(resourceId,
+                                parseDataTable(resourceId, readTable.bytes(), ops), fingerprint,
+                                true);
+                    } catch (Exception exception) {
+                        DataTables.LOGGER.error(
+                                "Couldn't parse data table {} from {} in data pack {}",
+                                resourceId, readTable.path(), fingerprint.packId(), exception);
+                        return null;
+                    } finally {
+                        parseTime.addAndGet(System.nanoTime() - parseStartTime);
+                    }
+                }, executor));
+            }
+
+            return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .thenApply(w -> {
+                        List<LoadedTable> loadedTables = new ArrayList<>(futures.size());
+                        for (CompletableFuture<LoadedTable> future : futures) {
+                            LoadedTable result = future.join();
+                            if (result != null) {
+                                loadedTables.add(result);
+                            }
+                        }
+                        LoadResult result = collectLoadResult(loadedTables, previousEntries,
+                                packFingerprint, null);
+                        this.loadTime = System.nanoTime() - startTime;
+                        this.tablesParsed = result.changed().size();
+                        event.tables = result.entries().size();
+                        event.parsed = result.changed().size();
+                        event.commit();
+                        DataTables.LOGGER.info(
+                                "Parsed {} data tables in {} ms ({} ms sequential parse time)",
+                                result.changed().size(), toMillis(this.loadTime),
+                                toMillis(parseTime.get()));
+                        return result;
+                    });
+        });
+    }
+
+    // Pairs the parsed entries saved in the cache with the resources just read, so that later
+    // reloads can reuse them like any other loaded table. Returns null if the cache is missing
+    // any of them.
+    @Nullable
+    private static List<LoadedTable> getCachedLoadedTables(List<ReadTable> readTables,
+            CompiledTableCache.CachedTables cached) {
+        List<LoadedTable> loadedTables = new ArrayList<>(readTables.size());
+        for (ReadTable readTable : readTables) {
+            ParsedTable parsedTable = cached.parsedTables().get(readTable.id());
+            if (parsedTable == null) {
+                return null;
+            }
+            loadedTables.add(
+                    new LoadedTable(readTable.id(), parsedTable, readTable.fingerprint(), false));
+        }
+        return loadedTables;
+    }
+
+    private static LoadResult collectLoadResult(List<LoadedTable> loadedTables,
+            Map<Identifier, DataTableEntry> previousEntries, HashCode packFingerprint,
+            @Nullable Map<Identifier, DataTable> cachedTables) {
+        Map<Identifier, DataTableEntry> map = new HashMap<>();
+        Map<Identifier, LoadedTable> loaded = new HashMap<>();
+        Map<Identifier, List<String>> columns = new HashMap<>();
+        Set<Identifier> changed = new HashSet<>();
+        for (LoadedTable result : loadedTables) {
+            loaded.put(result.id(), result);
+            if (!result.table().columns().isEmpty()) {
+                columns.put(result.id(), result.table().columns());
+            }
+            for (Entry<Identifier, DataTableEntry> entry : result.table().entries().entrySet()) {
+                if (map.put(entry.getKey(), entry.getValue()) != null) {
+                    DataTables.LOGGER.warn(
+                            "Data table {} is defined both by its own file and as a column",
+                            entry.getKey());
+                }
+                if (result.changed()) {
+                    changed.add(entry.getKey());
+                }
+            }
+        }
+        // Removed tables are changed too, since anything inheriting from them must rebuild
+        for (Identifier id : previousEntries.keySet()) {
+            if (!map.containsKey(id)) {
+                changed.add(id);
+            }
+        }
+        return new LoadResult(map, loaded, changed, columns, packFingerprint, cachedTables);
+    }
 
-                JsonElement json = JsonParser.parseReader(reader);
+    // Identifies the exact set of data table resources, along with the version of this mod that
+    // parsed them
+    private static HashCode computePackFingerprint(List<ReadTable> readTables) {
+        List<ReadTable> sorted = new ArrayList<>(readTables);
+        sorted.sort(Comparator.comparing(ReadTable::id));
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putString(getModVersion(), StandardCharsets.UTF_8);
+        for (ReadTable readTable : sorted) {
+            hasher.putString(readTable.id().toString(), StandardCharsets.UTF_8);
+            hasher.putString(readTable.fingerprint().packId(), StandardCharsets.UTF_8);
+            hasher.putBytes(readTable.fingerprint().hash().asBytes());
+        }
+        return hasher.hash();
+    }
+
+    private static String getModVersion() {
+        return FabricLoader.getInstance()
+                .getModContainer(DataTables.MOD_ID)
+                .map(mod -> mod.getMetadata().getVersion().getFriendlyString())
+                .orElse("");
+    }
 
-                JsonObject object = JsonHelper.asObject(json, "data_table");
+    // Multi-column tables are split into one entry per column, which inherit from the same column
+    // of each parent
+    private static ParsedTable parseDataTable(Identifier id, byte[] bytes,
+            RegistryOps<JsonElement> ops) throws Exception {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes),
+                StandardCharsets.UTF_8)) {
+            List<Identifier> parents = List.of();
+            Map<TagEntryId, Integer> entries = new HashMap<>();
+            Map<String, Integer> stateEntries = new HashMap<>();
+            DataTableType type = DataTableType.MISC;
+            ConflictPolicy conflictPolicy = DEFAULT_CONFLICT_POLICY;
+            List<Identifier> tagPriority = List.of();
+            CachePolicy cachePolicy = null;
+            int cacheSize = CachePolicy.DEFAULT_SIZE;
+            Map<String, Identifier> inputs = Map.of();
+            TableExpression expression = null;
+
+            JsonElement json = JsonParser.parseReader(reader);
 
-                int defaultValue = JsonHelper.getInt(object, "default_value", 0);
-                if (object.has("parents")) {
-                    parents = PARENTS_CODEC.decode(ops, JsonHelper.getElement(object, "parents"))
-                            .getOrThrow(JsonSyntaxException::new)
-                            .getFirst();
+            JsonObject object = JsonHelper.asObject(json, "data_table");
+
+            List<String> columns = List.of();
+            if (object.has("columns")) {
+                columns = COLUMNS_CODEC.decode(ops, JsonHelper.getElement(object, "columns"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+                if (columns.isEmpty() || Set.copyOf(columns).size() != columns.size()) {
+                    throw new JsonSyntaxException(
+                            "Columns must be a non-empty list of unique names");
                 }
-                if (object.has("entries")) {
-                    entries = ENTRIES_CODEC.decode(ops, JsonHelper.getElement(object, "entries"))
-                            .getOrThrow(JsonSyntaxException::new)
-                            .getFirst();
+            }
+
+            int defaultValue = 0;
+            List<Integer> defaultValues = List.of();
+            if (!columns.isEmpty() && object.has("default_value") && object.get("default_value")
+                    .isJsonArray()) {
+                defaultValues = Codec.INT.listOf()
+                        .decode(ops, object.get("default_value"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+                checkColumnCount("default_value", defaultValues, columns);
+            } else {
+                defaultValue = JsonHelper.getInt(object, "default_value", 0);
+            }
+            Map<String, List<Integer>> rows = Map.of();
+
+            if (object.has("parents")) {
+                parents = PARENTS_CODEC.decode(ops, JsonHelper.getElement(object, "parents"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+            }
+            if (!columns.isEmpty() && object.has("entries")) {
+                rows = ROWS_CODEC.decode(ops, JsonHelper.getElement(object, "entries"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+                for (Entry<String, List<Integer>> row : rows.entrySet()) {
+                    checkColumnCount(row.getKey(), row.getValue(), columns);
+                }
+            } else if (object.has("entries")) {
+                Pair<Map<TagEntryId, Integer>, Map<String, Integer>> allEntries = ENTRIES_CODEC.decode(
+                                ops, JsonHelper.getElement(object, "entries"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+                entries = allEntries.getFirst();
+                stateEntries = allEntries.getSecond();
+            }
+            if (object.has("type")) {
+                type = DataTableType.CODEC.decode(ops, JsonHelper.getElement(object, "type"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+            }
+            if (object.has("conflict_policy")) {
+                conflictPolicy = ConflictPolicy.CODEC.decode(ops,
+                                JsonHelper.getElement(object, "conflict_policy"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+            }
+            if (object.has("tag_priority")) {
+                tagPriority = PARENTS_CODEC.decode(ops,
+                                JsonHelper.getElement(object, "tag_priority"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+            }
+
+            if (object.has("cache")) {
+                cachePolicy = CachePolicy.CODEC.decode(ops, JsonHelper.getElement(object, "cache"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+            }
+            if (object.has("cache_size")) {
+                cacheSize = CachePolicy.SIZE_CODEC.decode(ops,
+                                JsonHelper.getElement(object, "cache_size"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+            }
+            if (cachePolicy == null) {
+                cachePolicy = CachePolicy.forType(type);
+            }
+
+            if (object.has("inputs")) {
+                inputs = INPUTS_CODEC.decode(ops, JsonHelper.getElement(object, "inputs"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+            }
+            if (object.has("expression")) {
+                expression = TableExpression.CODEC.decode(ops,
+                                JsonHelper.getElement(object, "expression"))
+                        .getOrThrow(JsonSyntaxException::new)
+                        .getFirst();
+                if (!columns.isEmpty()) {
+                    throw new JsonSyntaxException(
+                            "Multi-column tables can't have an expression, but their columns "
+                                    + "can be inputs of a derived table");
                 }
-                if (object.has("type")) {
-                    type = DataTableType.CODEC.decode(ops, JsonHelper.getElement(object, "type"))
-                            .getOrThrow(JsonSyntaxException::new)
-                            .getFirst();
+                if (object.has("default_value")) {
+                    throw new JsonSyntaxException(
+                            "Derived tables compute their default value from their inputs");
                 }
+            }
 
-                map.put(resourceId,
-                        new DataTableEntry(type, parents, defaultValue, entries));
-            } catch (Exception exception) {
-                DataTables.LOGGER.error("Couldn't read data table {} from {} in data pack {}",
-                        resourceId, resourcePath, resource.getPackId(), exception);
+            if (columns.isEmpty()) {
+                DataTableEntry entry = createEntry(type, parents, defaultValue, entries,
+                        conflictPolicy, tagPriority, stateEntries, cachePolicy, cacheSize, inputs,
+                        expression);
+                return new ParsedTable(List.of(), Map.of(id,
+                        validateEntry(entry).getOrThrow(JsonSyntaxException::new)));
             }
+
+            Map<Identifier, DataTableEntry> columnEntries = new HashMap<>();
+            for (int column = 0; column < columns.size(); ++column) {
+                String name = columns.get(column);
+                Map<String, Integer> values = new HashMap<>();
+                for (Entry<String, List<Integer>> row : rows.entrySet()) {
+                    values.put(row.getKey(), row.getValue().get(column));
+                }
+                Pair<Map<TagEntryId, Integer>, Map<String, Integer>> allEntries = splitEntries(
+                        values).getOrThrow(JsonSyntaxException::new);
+                List<Identifier> columnParents = parents.stream()
+                        .map(parentId -> MultiColumnTable.getColumnId(parentId, name))
+                        .toList();
+                int columnDefault = defaultValues.isEmpty() ? defaultValue
+                        : defaultValues.get(column);
+                columnEntries.put(MultiColumnTable.getColumnId(id, name), validateEntry(
+                        createEntry(type, columnParents, columnDefault,
+                                allEntries.getFirst(), conflictPolicy, tagPriority,
+                                allEntries.getSecond(), cachePolicy, cacheSize, Map.of(), null))
+                        .getOrThrow(JsonSyntaxException::new));
+            }
+            return new ParsedTable(columns, columnEntries);
+        }
+    }
+
+    // Keys with brackets are item components in item tables, and block states otherwise
+    private static DataTableEntry createEntry(DataTableType type, List<Identifier> parents,
+            int defaultValue, Map<TagEntryId, Integer> entries, ConflictPolicy conflictPolicy,
+            List<Identifier> tagPriority, Map<String, Integer> bracketedEntries,
+            CachePolicy cachePolicy, int cacheSize, Map<String, Identifier> inputs,
+            @Nullable TableExpression expression) {
+        boolean item = type == DataTableType.ITEM;
+        return new DataTableEntry(type, parents, defaultValue, entries, conflictPolicy,
+                tagPriority, item ? Map.of() : bracketedEntries,
+                item ? bracketedEntries : Map.of(), cachePolicy, cacheSize, inputs, expression);
+    }
+
+    private static DataResult<DataTableEntry> validateEntry(DataTableEntry entry) {
+        // Item component entries can match tags, but block states always name a single block
+        for (String key : entry.stateEntries().keySet()) {
+            if (key.startsWith("#")) {
+                return DataResult.error(() -> "Block state entries cannot be tags: " + key);
+            }
+        }
+        TableExpression expression = entry.expression();
+        if (expression == null) {
+            return entry.inputs().isEmpty() ? DataResult.success(entry)
+                    : DataResult.error(() -> "Inputs are only used by tables with an expression");
+        }
+        if (!entry.parents().isEmpty()) {
+            return DataResult.error(
+                    () -> "Derived tables can't have parents, but a parent can be an input");
+        }
+        for (String variable : expression.getVariables()) {
+            if (!entry.inputs().containsKey(variable)) {
+                return DataResult.error(
+                        () -> "Expression " + expression + " uses " + variable
+                                + ", which is not one of its inputs");
+            }
+        }
+        return DataResult.success(entry);
+    }
+
+    private static void checkColumnCount(String key, List<Integer> values, List<String> columns) {
+        if (values.size() != columns.size()) {
+            throw new JsonSyntaxException(
+                    "Expected " + columns.size() + " values for " + key + " but found "
+                            + values.size());
         }
     }
 
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static DataResult<Pair<Map<TagEntryId, Integer>, Map<String, Integer>>> splitEntries(
+            Map<String, Integer> allEntries) {
+        Map<TagEntryId, Integer> entries = new HashMap<>();
+        Map<String, Integer> stateEntries = new HashMap<>();
+        for (Entry<String, Integer> entry : allEntries.entrySet()) {
+            String key = entry.getKey();
+            if (key.indexOf('[') >= 0) {
+                stateEntries.put(key, entry.getValue());
+                continue;
+            }
+            boolean tag = key.startsWith("#");
+
+            DataResult<Identifier> id = Identifier.validate(tag ? key.substring(1) : key);
+            if (id.isError()) {
+                return id.map(ignored -> null);
+            }
+            entries.put(new TagEntryId(id.getOrThrow(), tag), entry.getValue());
+        }
+        return DataResult.success(Pair.of(entries, stateEntries));
+    }
+
+    private static Map<String, Integer> joinEntries(
+            Pair<Map<TagEntryId, Integer>, Map<String, Integer>> allEntries) {
+        Map<String, Integer> entries = new HashMap<>(allEntries.getSecond());
+        for (Entry<TagEntryId, Integer> entry : allEntries.getFirst().entrySet()) {
+            entries.put(entry.getKey().toString(), entry.getValue());
+        }
+        return entries;
+    }
+
     protected void clear() {
-        this.unresolved.clear();
-        this.dataTables.clear();
+        this.unresolved = new HashMap<>();
+        this.loaded = new HashMap<>();
+        this.columns = new HashMap<>();
+        this.changed = new HashSet<>();
+        this.pendingResolve = false;
+        this.publish(Map.of(), Map.of());
         this.resolved = false;
     }
 
     public SyncPayload createSyncPacket() {
-        return new SyncPayload(dataTables);
+        return createSyncPacket(this.snapshot.dataTables().keySet());
+    }
+
+    // Only includes the requested tables that exist, ignoring any that no longer do. Each table
+    // is encoded at most once per snapshot and every response reuses those bytes, so what is
+    // kept never grows past one encoded copy of each table, however players combine requests.
+    // Returns null if the request lists more tables than exist.
+    @Nullable
+    public SyncPayload createSyncPacket(Collection<Identifier> ids) {
+        Snapshot snapshot = this.snapshot;
+        Map<Identifier, DataTable> dataTables = snapshot.dataTables();
+        if (ids.size() > dataTables.size()) {
+            DataTables.LOGGER.warn("Rejected a sync request for {} data tables, only {} exist",
+                    ids.size(), dataTables.size());
+            return null;
+        }
+
+        Map<Identifier, DataTable> requested = new HashMap<>();
+        List<byte[]> encoded = new ArrayList<>();
+        for (Identifier id : ids) {
+            DataTable dataTable = dataTables.get(id);
+            if (dataTable != null && requested.put(id, dataTable) == null) {
+                encoded.add(getEncodedTable(snapshot, id, dataTable));
+            }
+        }
+        return new SyncPayload(requested, encoded);
+    }
+
+    private byte[] getEncodedTable(Snapshot snapshot, Identifier id, DataTable dataTable) {
+        byte[] encoded = snapshot.encodedTables().get(id);
+        if (encoded != null) {
+            this.markPayloadReused(encoded);
+            return encoded;
+        }
+        return snapshot.encodedTables().computeIfAbsent(id,
+                key -> encodePayload(DataTablePacketCodecs.SYNC_ENTRY, Map.entry(id, dataTable),
+                        1));
+    }
+
+    public SyncManifestPayload createManifestPacket() {
+        Snapshot snapshot = this.snapshot;
+        Map<Identifier, Long> contentHashes = new HashMap<>();
+        for (Entry<Identifier, DataTable> entry : snapshot.dataTables().entrySet()) {
+            contentHashes.put(entry.getKey(), entry.getValue().getContentHash());
+        }
+        SyncManifestPayload payload = new SyncManifestPayload(contentHashes, snapshot.columns());
+
+        byte[] encoded = this.encodedManifest;
+        if (encoded == null) {
+            encoded = encodePayload(DataTablePacketCodecs.MANIFEST, payload, contentHashes.size());
+            this.encodedManifest = encoded;
+        } else {
+            this.markPayloadReused(encoded);
+        }
+        return new SyncManifestPayload(contentHashes, snapshot.columns(), encoded);
+    }
+
+    private <V> byte[] encodePayload(PacketCodec<ByteBuf, V> codec, V value, int tables) {
+        DataTableEvents.EncodeSyncPayload event = new DataTableEvents.EncodeSyncPayload();
+        event.begin();
+        long startTime = System.nanoTime();
+        byte[] encoded = DataTablePacketCodecs.encodeToBytes(codec, value);
+        this.encodeTime.addAndGet(System.nanoTime() - startTime);
+        this.payloadsEncoded.incrementAndGet();
+        this.bytesEncoded.addAndGet(encoded.length);
+        event.tables = tables;
+        event.bytes = encoded.length;
+        event.commit();
+        return encoded;
+    }
+
+    private void markPayloadReused(byte[] encoded) {
+        this.payloadsReused.incrementAndGet();
+        this.bytesReused.addAndGet(encoded.length);
+    }
+
+    // Encoded payloads are only valid for the tables they were built from
+    private void invalidateEncodedPayloads() {
+        if (this.payloadsReused.get() > 0) {
+            DataTables.LOGGER.info(
+                    "Reused encoded sync payloads {} times ({} encoded, {} bytes not re-encoded)",
+                    this.payloadsReused.get(), this.payloadsEncoded.get(),
+                    this.bytesReused.get());
+        }
+        this.encodedManifest = null;
+        this.payloadsEncoded.set(0L);
+        this.payloadsReused.set(0L);
+        this.bytesReused.set(0L);
+        this.bytesEncoded.set(0L);
+        this.encodeTime.set(0L);
     }
 
     public void syncDataTables(Map<Identifier, DataTable> dataTables) {
-        clear();
-        this.dataTables.putAll(dataTables);
-        markResolved();
-        DataTables.LOGGER.info("Synced {} data tables from server", this.dataTables.size());
+        Map<Identifier, DataTable> previous = this.snapshot.dataTables();
+        this.replaceTables(dataTables, this.snapshot.columns());
+        this.resolved = true;
+        DataTables.LOGGER.info("Synced {} data tables from server", dataTables.size());
+        this.fireChanges(previous, true);
+    }
+
+    // Compiles the given tables and publishes them in place of every current table. Package-private
+    // so that it can be benchmarked.
+    void replaceTables(Map<Identifier, DataTable> dataTables,
+            Map<Identifier, List<String>> columns) {
+        this.publish(this.compileAll(dataTables, id -> true), columns);
+    }
+
+    // Replaces only the given tables, keeping every other table as-is
+    public void applySyncDelta(Map<Identifier, DataTable> changed,
+            Collection<Identifier> removed, Map<Identifier, List<String>> columns) {
+        Map<Identifier, DataTable> previous = this.snapshot.dataTables();
+        Map<Identifier, DataTable> dataTables = new HashMap<>(this.snapshot.dataTables());
+        removed.forEach(dataTables::remove);
+        dataTables.putAll(changed);
+        this.publish(this.compileAll(dataTables, changed::containsKey), columns);
+        this.resolved = true;
+        DataTables.LOGGER.info("Synced {} changed and {} removed data tables from server",
+                changed.size(), removed.size());
+        this.fireChanges(previous, true);
+    }
+
+    // Compares the published tables against the previous ones and notifies listeners
+    private void fireChanges(Map<Identifier, DataTable> previous, boolean synced) {
+        DataTableChanges changes = DataTableChanges.compute(this.snapshot.generation(), synced,
+                previous, this.snapshot.dataTables());
+        DataTableChangeCallback.EVENT.invoker().onChanged(changes);
     }
 
     public void setRegistries(@NotNull RegistryWrapper.WrapperLookup registries) {
@@ -155,19 +916,50 @@ public class DataTableRegistry implements SimpleSynchronousResourceReloadListene
     }
 
     public DataTable get(Identifier id) {
-        return dataTables.getOrDefault(id, DUMMY);
+        return snapshot.dataTables().getOrDefault(id, DUMMY);
+    }
+
+    public DataTableHandle handle(Identifier id) {
+        synchronized (this.handles) {
+            return this.handles.computeIfAbsent(id, key -> {
+                DataTableHandle handle = new DataTableHandle(key, DUMMY);
+                handle.bind(this.snapshot.dataTables().get(key));
+                return handle;
+            });
+        }
     }
 
     public Optional<DataTable> getOptional(Identifier id) {
-        return Optional.ofNullable(dataTables.get(id));
+        return Optional.ofNullable(snapshot.dataTables().get(id));
     }
 
     public boolean contains(Identifier id) {
-        return dataTables.containsKey(id);
+        return snapshot.dataTables().containsKey(id);
     }
 
     public Collection<Identifier> getDataTableIds() {
-        return dataTables.keySet();
+        return snapshot.dataTables().keySet();
+    }
+
+    public Optional<MultiColumnTable> getMultiColumnTable(Identifier id) {
+        return Optional.ofNullable(snapshot.multiColumnTables().get(id));
+    }
+
+    public Collection<Identifier> getMultiColumnTableIds() {
+        return snapshot.multiColumnTables().keySet();
+    }
+
+    // Increases every time a new set of tables is published, from a reload or from syncing
+    public long getGeneration() {
+        return snapshot.generation();
+    }
+
+    public Stats getStats() {
+        Snapshot snapshot = this.snapshot;
+        return new Stats(snapshot.dataTables().size(), snapshot.generation(), this.loadTime,
+                this.tablesParsed, this.resolveTime, this.tablesRebuilt,
+                this.payloadsEncoded.get(), this.bytesEncoded.get(), this.encodeTime.get(),
+                this.payloadsReused.get(), this.bytesReused.get());
     }
 
     @Override
@@ -179,91 +971,378 @@ public class DataTableRegistry implements SimpleSynchronousResourceReloadListene
         return resolved;
     }
 
-    private static class Resolver {
+    // Resolves tables in topological order of their parents instead of recursing, one level of
+    // the hierarchy at a time, so that tables on the same level can be resolved in parallel. Each
+    // table layers its own entries over its parent's rather than copying them. Package-private so
+    // that it can be benchmarked.
+    static class Resolver {
+
+        // Levels smaller than this aren't worth splitting across threads
+        private static final int PARALLEL_THRESHOLD = 64;
 
         private final Map<Identifier, DataTableEntry> unresolved;
-        private final Map<Identifier, DataTableEntry> resolved = new HashMap<>();
-        private final Set<Identifier> toResolve = new HashSet<>();
 
         Resolver(Map<Identifier, DataTableEntry> unresolved) {
             this.unresolved = unresolved;
         }
 
-        public void resolve(BiConsumer<Identifier, DataTable> dataTableConsumer) {
-            Map<Identifier, DataTableEntry> dataTableEntries = new HashMap<>();
-
+        // Only builds tables accepted by the filter, though their parents are always resolved
+        public void resolve(Predicate<Identifier> filter,
+                BiConsumer<Identifier, DataTable> dataTableConsumer) {
+            List<Identifier> requested = new ArrayList<>();
             for (Entry<Identifier, DataTableEntry> entry : this.unresolved.entrySet()) {
-                try {
-                    Identifier id = entry.getKey();
-                    DataTableEntry unresolved = entry.getValue();
-                    if (unresolved.entries().isEmpty()) {
+                DataTableEntry unresolved = entry.getValue();
+                if (!filter.test(entry.getKey())) {
+                    continue;
+                }
+                if (unresolved.entries().isEmpty() && unresolved.stateEntries().isEmpty()
+                        && unresolved.componentEntries().isEmpty()
+                        && unresolved.expression() == null) {
+                    continue;
+                }
+                requested.add(entry.getKey());
+            }
+
+            // Collect the requested tables and all of their ancestors, counting how many parents
+            // and inputs each one is still waiting on
+            Map<Identifier, List<Identifier>> children = new HashMap<>();
+            Object2IntMap<Identifier> waitingOn = new Object2IntOpenHashMap<>();
+            Deque<Identifier> toVisit = new ArrayDeque<>(requested);
+            while (!toVisit.isEmpty()) {
+                Identifier id = toVisit.pop();
+                if (waitingOn.containsKey(id)) {
+                    continue;
+                }
+                int parents = 0;
+                for (Identifier parentId : this.unresolved.get(id).dependencies()) {
+                    if (!this.unresolved.containsKey(parentId)) {
+                        DataTables.LOGGER.error("Unable to resolve parent {} referenced from {}",
+                                parentId, id, new FileNotFoundException(parentId.toString()));
                         continue;
                     }
+                    children.computeIfAbsent(parentId, k -> new ArrayList<>()).add(id);
+                    toVisit.add(parentId);
+                    ++parents;
+                }
+                waitingOn.put(id, parents);
+            }
 
-                    DataTableEntry resolved = this.getOrResolve(id);
-                    dataTableEntries.put(id, resolved);
-                } catch (Exception e) {
-                    DataTables.LOGGER.error("Failed to load {}", entry.getKey(), e);
+            Map<Identifier, ResolvedEntry> resolved = new ConcurrentHashMap<>();
+            List<Identifier> level = new ArrayList<>();
+            for (Object2IntMap.Entry<Identifier> entry : waitingOn.object2IntEntrySet()) {
+                if (entry.getIntValue() == 0) {
+                    level.add(entry.getKey());
                 }
             }
+            while (!level.isEmpty()) {
+                (level.size() >= PARALLEL_THRESHOLD ? level.parallelStream()
+                        : level.stream()).forEach(id -> {
+                    try {
+                        resolved.put(id, this.resolveEntry(id, resolved));
+                    } catch (Exception e) {
+                        DataTables.LOGGER.error("Failed to load {}", id, e);
+                    }
+                });
 
-            for (Entry<Identifier, DataTableEntry> entry : dataTableEntries.entrySet()) {
-                DataTableEntry table = entry.getValue();
-                Object2IntMap<Identifier> elementEntryTable = new Object2IntOpenHashMap<>();
-                Object2IntMap<Identifier> tagEntryTable = new Object2IntOpenHashMap<>();
-                for (Entry<TagEntryId, Integer> tableEntry : table.entries().entrySet()) {
-                    TagEntryId tableEntryId = tableEntry.getKey();
-                    if (tableEntryId.tag()) {
-                        tagEntryTable.put(tableEntryId.id(), tableEntry.getValue().intValue());
-                    } else {
-                        elementEntryTable.put(tableEntryId.id(), tableEntry.getValue().intValue());
+                List<Identifier> nextLevel = new ArrayList<>();
+                for (Identifier id : level) {
+                    for (Identifier childId : children.getOrDefault(id, List.of())) {
+                        int remaining = waitingOn.getInt(childId) - 1;
+                        waitingOn.put(childId, remaining);
+                        if (remaining == 0) {
+                            nextLevel.add(childId);
+                        }
                     }
                 }
-                dataTableConsumer.accept(entry.getKey(),
-                        new DataTable(table.type(), table.defaultValue(), elementEntryTable,
-                                tagEntryTable));
+                level = nextLevel;
             }
-        }
 
-        DataTableEntry getOrResolve(Identifier id) throws Exception {
-            if (this.resolved.containsKey(id)) {
-                return this.resolved.get(id);
+            // Anything still waiting is part of a cycle, or inherits from one
+            for (Object2IntMap.Entry<Identifier> entry : waitingOn.object2IntEntrySet()) {
+                if (entry.getIntValue() > 0) {
+                    DataTables.LOGGER.error("Failed to load {}", entry.getKey(),
+                            new IllegalStateException(
+                                    "Circular reference while loading " + entry.getKey()));
+                }
             }
 
-            if (this.toResolve.contains(id)) {
-                throw new IllegalStateException("Circular reference while loading " + id);
+            for (Identifier id : requested) {
+                ResolvedEntry resolvedEntry = resolved.get(id);
+                if (resolvedEntry == null) {
+                    continue;
+                }
+                DataTableEntry table = this.unresolved.get(id);
+                dataTableConsumer.accept(id,
+                        new DataTable(resolvedEntry.type(), resolvedEntry.defaultValue(),
+                                resolvedEntry.elements(),
+                                resolvedEntry.tags(), table.conflictPolicy(),
+                                resolvedEntry.tagPriority(), resolvedEntry.states(),
+                                resolvedEntry.components(), table.cachePolicy(),
+                                table.cacheSize(),
+                                resolvedEntry.derivation()));
             }
-            this.toResolve.add(id);
+        }
+
+        // Every parent must already be resolved, or have failed to
+        private ResolvedEntry resolveEntry(Identifier id, Map<Identifier, ResolvedEntry> resolved) {
             DataTableEntry unresolved = this.unresolved.get(id);
-            if (unresolved == null) {
-                throw new FileNotFoundException(id.toString());
+            if (unresolved.expression() != null) {
+                return this.resolveDerivedEntry(id, unresolved, resolved);
             }
+            Object2IntMap<Identifier> elements = new Object2IntOpenHashMap<>();
+            Object2IntMap<Identifier> tags = new Object2IntOpenHashMap<>();
+            for (Entry<TagEntryId, Integer> entry : unresolved.entries().entrySet()) {
+                TagEntryId entryId = entry.getKey();
+                (entryId.tag() ? tags : elements).put(entryId.id(), entry.getValue().intValue());
+            }
+            Object2IntMap<String> states = new Object2IntOpenHashMap<>(unresolved.stateEntries());
+            Object2IntMap<String> components = new Object2IntOpenHashMap<>(
+                    unresolved.componentEntries());
 
-            Map<TagEntryId, Integer> entries = new HashMap<>();
+            List<ResolvedEntry> parents = new ArrayList<>();
+            // A child's own tag priorities are listed before anything it inherits
+            Set<Identifier> tagPriority = new LinkedHashSet<>(unresolved.tagPriority());
+            // Children of a typed derived table are derived the same way, with their entries
+            // layered over the computed values
+            DataTableType type = unresolved.type();
+            DataTable.Derivation derivation = null;
             for (Identifier parentId : unresolved.parents()) {
-                try {
-                    DataTableEntry parent = this.getOrResolve(parentId);
-                    entries.putAll(parent.entries());
-                } catch (Exception e) {
-                    DataTables.LOGGER.error("Unable to resolve parent {} referenced from {}",
-                            parentId, id, e);
+                ResolvedEntry parent = resolved.get(parentId);
+                if (parent == null) {
+                    // Missing parents were already reported while collecting
+                    if (this.unresolved.containsKey(parentId)) {
+                        DataTables.LOGGER.error("Unable to resolve parent {} referenced from {}",
+                                parentId, id);
+                    }
+                    continue;
+                }
+                parents.add(parent);
+                tagPriority.addAll(parent.tagPriority());
+                if (parent.derivation() == null) {
+                    continue;
+                }
+                if (derivation != null) {
+                    throw new IllegalStateException(
+                            id + " can't inherit from more than one typed derived table");
+                }
+                derivation = parent.derivation();
+                type = checkDerivedType(id, type, parent.type());
+            }
+
+            return new ResolvedEntry(layer(parents, ResolvedEntry::elements, elements),
+                    layer(parents, ResolvedEntry::tags, tags),
+                    layer(parents, ResolvedEntry::states, states),
+                    layer(parents, ResolvedEntry::components, components),
+                    List.copyOf(tagPriority), unresolved.defaultValue(), type, derivation);
+        }
+
+        // Derived tables take the type of their inputs. For block, item and entity tables, the
+        // expression is evaluated for every raw ID once the inputs are compiled with their tags
+        // expanded. Misc tables, or tables whose inputs have different types, evaluate the
+        // expression for every key of any input instead, where inputs without the key give their
+        // default value. The table's own entries override the computed values.
+        private ResolvedEntry resolveDerivedEntry(Identifier id, DataTableEntry unresolved,
+                Map<Identifier, ResolvedEntry> resolved) {
+            TableExpression expression = Objects.requireNonNull(unresolved.expression());
+            List<String> variables = expression.getVariables();
+            List<ResolvedEntry> inputs = new ArrayList<>(variables.size());
+            List<Identifier> inputIds = new ArrayList<>(variables.size());
+            int[] defaultValues = new int[variables.size()];
+            // A child's own tag priorities are listed before anything it inherits
+            Set<Identifier> tagPriority = new LinkedHashSet<>(unresolved.tagPriority());
+            Set<DataTableType> inputTypes = new HashSet<>();
+            for (int i = 0; i < variables.size(); ++i) {
+                Identifier inputId = unresolved.inputs().get(variables.get(i));
+                ResolvedEntry input = resolved.get(inputId);
+                if (input == null) {
+                    throw new IllegalStateException(
+                            "Unable to resolve input " + inputId + " referenced from " + id);
                 }
+                inputs.add(input);
+                inputIds.add(inputId);
+                inputTypes.add(input.type());
+                defaultValues[i] = input.defaultValue();
+                tagPriority.addAll(input.tagPriority());
+            }
+
+            Object2IntMap<Identifier> elements = new Object2IntOpenHashMap<>();
+            Object2IntMap<Identifier> tags = new Object2IntOpenHashMap<>();
+            for (Entry<TagEntryId, Integer> entry : unresolved.entries().entrySet()) {
+                TagEntryId entryId = entry.getKey();
+                (entryId.tag() ? tags : elements).put(entryId.id(), entry.getValue().intValue());
+            }
+            Object2IntMap<String> states = new Object2IntOpenHashMap<>(unresolved.stateEntries());
+            Object2IntMap<String> components = new Object2IntOpenHashMap<>(
+                    unresolved.componentEntries());
+
+            DataTableType type = unresolved.type();
+            if (inputTypes.size() == 1) {
+                type = checkDerivedType(id, type, inputTypes.iterator().next());
+            } else if (inputTypes.size() > 1 && type != DataTableType.MISC) {
+                throw new IllegalStateException(
+                        "Inputs of " + id + " must all be " + type.asString() + " tables");
+            }
+            if (type.getRegistry() != null) {
+                return new ResolvedEntry(LayeredEntryMap.of(elements), LayeredEntryMap.of(tags),
+                        LayeredEntryMap.of(states), LayeredEntryMap.of(components),
+                        List.copyOf(tagPriority), expression.evaluate(defaultValues), type,
+                        new DataTable.Derivation(expression, inputIds));
             }
 
-            entries.putAll(unresolved.entries);
-            DataTableEntry resolved = new DataTableEntry(unresolved.type(),
-                    unresolved.parents(), unresolved.defaultValue(), entries);
+            return new ResolvedEntry(
+                    LayeredEntryMap.of(evaluate(expression, inputs, ResolvedEntry::elements,
+                            defaultValues)).with(elements),
+                    LayeredEntryMap.of(evaluate(expression, inputs, ResolvedEntry::tags,
+                            defaultValues)).with(tags),
+                    LayeredEntryMap.of(evaluate(expression, inputs, ResolvedEntry::states,
+                            defaultValues)).with(states),
+                    LayeredEntryMap.of(evaluate(expression, inputs, ResolvedEntry::components,
+                            defaultValues)).with(components), List.copyOf(tagPriority),
+                    expression.evaluate(defaultValues), type, null);
+        }
 
-            this.resolved.put(id, resolved);
-            this.toResolve.remove(id);
+        // Misc is the default type, so tables that don't declare one take the derived type
+        private static DataTableType checkDerivedType(Identifier id, DataTableType declared,
+                DataTableType derived) {
+            if (declared != DataTableType.MISC && declared != derived) {
+                throw new IllegalStateException(
+                        id + " is a " + declared.asString() + " table, but is derived from "
+                                + derived.asString() + " tables");
+            }
+            return derived;
+        }
 
-            return resolved;
+        private static <K> Object2IntMap<K> evaluate(TableExpression expression,
+                List<ResolvedEntry> inputs, Function<ResolvedEntry, LayeredEntryMap<K>> getter,
+                int[] defaultValues) {
+            List<LayeredEntryMap<K>> inputEntries = inputs.stream().map(getter).toList();
+            Set<K> keys = new HashSet<>();
+            for (LayeredEntryMap<K> entries : inputEntries) {
+                keys.addAll(entries.keySet());
+            }
+            Object2IntMap<K> values = new Object2IntOpenHashMap<>(keys.size());
+            int[] row = new int[inputEntries.size()];
+            for (K key : keys) {
+                for (int i = 0; i < row.length; ++i) {
+                    LayeredEntryMap<K> entries = inputEntries.get(i);
+                    row[i] = entries.containsKey(key) ? entries.getInt(key) : defaultValues[i];
+                }
+                values.put(key, expression.evaluate(row));
+            }
+            return values;
         }
+
+        private static <K> LayeredEntryMap<K> layer(List<ResolvedEntry> parents,
+                Function<ResolvedEntry, LayeredEntryMap<K>> getter, Object2IntMap<K> entries) {
+            if (parents.isEmpty()) {
+                return LayeredEntryMap.of(entries);
+            }
+            if (parents.size() == 1) {
+                return getter.apply(parents.getFirst()).with(entries);
+            }
+            // Later parents take precedence over earlier ones, which can't be expressed as a
+            // single chain of layers, so multiple parents are merged into a new base
+            Object2IntMap<K> merged = new Object2IntOpenHashMap<>();
+            for (ResolvedEntry parent : parents) {
+                merged.putAll(getter.apply(parent));
+            }
+            return LayeredEntryMap.of(merged).with(entries);
+        }
+    }
+
+    private record ResolvedEntry(LayeredEntryMap<Identifier> elements,
+                                 LayeredEntryMap<Identifier> tags,
+                                 LayeredEntryMap<String> states,
+                                 LayeredEntryMap<String> components,
+                                 List<Identifier> tagPriority, int defaultValue,
+                                 DataTableType type,
+                                 @Nullable DataTable.Derivation derivation) {}
+
+    // Encoded tables belong to the snapshot they were encoded from, so a request racing a
+    // publish can never store bytes for tables that were already replaced
+    private record Snapshot(Map<Identifier, DataTable> dataTables,
+                            Map<Identifier, List<String>> columns,
+                            Map<Identifier, MultiColumnTable> multiColumnTables,
+                            long generation, Map<Identifier, byte[]> encodedTables) {
+
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), Map.of(), 0L,
+                new ConcurrentHashMap<>());
     }
 
+    // Identifies the exact contents of a data table resource
+    private record Fingerprint(String packId, HashCode hash) {}
+
+    private record ReadTable(Identifier id, Identifier path, byte[] bytes,
+                             Fingerprint fingerprint) {}
+
+    // Every entry parsed from one resource, which is one per column for multi-column tables
+    record ParsedTable(List<String> columns, Map<Identifier, DataTableEntry> entries) {}
+
+    private record LoadedTable(Identifier id, ParsedTable table, Fingerprint fingerprint,
+                               boolean changed) {}
+
+    // Load and resolve timings are for the most recent reload, and sync payload counts are since
+    // tables last changed. Times are in nanoseconds.
+    public record Stats(int tables, long generation, long loadTime, int tablesParsed,
+                        long resolveTime, int tablesRebuilt, long payloadsEncoded,
+                        long bytesEncoded, long encodeTime, long payloadsReused,
+                        long bytesReused) {}
+
+    // Cached tables are set if they were loaded from the compiled table cache, and only need to be
+    // compiled. Entries are always set, so that later reloads can reuse them.
+    record LoadResult(Map<Identifier, DataTableEntry> entries,
+                      Map<Identifier, LoadedTable> loaded, Set<Identifier> changed,
+                      Map<Identifier, List<String>> columns, HashCode packFingerprint,
+                      @Nullable Map<Identifier, DataTable> cachedTables) {}
+
     // Represents an unresolved or unmerged data table
     public record DataTableEntry(DataTableType type, List<Identifier> parents,
-                                    int defaultValue, Map<TagEntryId, Integer> entries) {
+                                    int defaultValue, Map<TagEntryId, Integer> entries,
+                                    ConflictPolicy conflictPolicy, List<Identifier> tagPriority,
+                                    Map<String, Integer> stateEntries,
+                                    Map<String, Integer> componentEntries,
+                                    CachePolicy cachePolicy, int cacheSize,
+                                    Map<String, Identifier> inputs,
+                                    @Nullable TableExpression expression) {
+
+        public DataTableEntry(DataTableType type, List<Identifier> parents, int defaultValue,
+                Map<TagEntryId, Integer> entries) {
+            this(type, parents, defaultValue, entries, DEFAULT_CONFLICT_POLICY, List.of());
+        }
+
+        public DataTableEntry(DataTableType type, List<Identifier> parents, int defaultValue,
+                Map<TagEntryId, Integer> entries, ConflictPolicy conflictPolicy,
+                List<Identifier> tagPriority) {
+            this(type, parents, defaultValue, entries, conflictPolicy, tagPriority, Map.of(),
+                    Map.of(), CachePolicy.forType(type), CachePolicy.DEFAULT_SIZE, Map.of(), null);
+        }
+
+        // Block state and item component entries, which are both written with brackets
+        public Map<String, Integer> bracketedEntries() {
+            if (componentEntries.isEmpty()) {
+                return stateEntries;
+            }
+            if (stateEntries.isEmpty()) {
+                return componentEntries;
+            }
+            Map<String, Integer> bracketed = new HashMap<>(stateEntries);
+            bracketed.putAll(componentEntries);
+            return bracketed;
+        }
+
+        // Tables that must be resolved before this one
+        public List<Identifier> dependencies() {
+            if (inputs.isEmpty()) {
+                return parents;
+            }
+            List<Identifier> dependencies = new ArrayList<>(parents);
+            for (Identifier input : inputs.values()) {
+                if (!dependencies.contains(input)) {
+                    dependencies.add(input);
+                }
+            }
+            return dependencies;
+        }
 
         public static Builder builder() {
             return new Builder();
@@ -272,8 +1351,18 @@ public class DataTableRegistry implements SimpleSynchronousResourceReloadListene
         public static class Builder {
             private DataTableType type = DEFAULT_DATA_TABLE_TYPE;
             private int defaultValue = DEFAULT_DEFAULT_VALUE;
+            private ConflictPolicy conflictPolicy = DEFAULT_CONFLICT_POLICY;
+            @Nullable
+            private CachePolicy cachePolicy = null;
+            private int cacheSize = CachePolicy.DEFAULT_SIZE;
             private final List<Identifier> parents = new ArrayList<>();
+            private final List<Identifier> tagPriority = new ArrayList<>();
             private final Map<TagEntryId, Integer> entries = new HashMap<>();
+            private final Map<String, Integer> stateEntries = new HashMap<>();
+            private final Map<String, Integer> componentEntries = new HashMap<>();
+            private final Map<String, Identifier> inputs = new HashMap<>();
+            @Nullable
+            private TableExpression expression = null;
 
             public Builder() {
             }
@@ -288,6 +1377,36 @@ public class DataTableRegistry implements SimpleSynchronousResourceReloadListene
                 return this;
             }
 
+            public Builder conflictPolicy(ConflictPolicy conflictPolicy) {
+                this.conflictPolicy = conflictPolicy;
+                return this;
+            }
+
+            // Defaults to bounded for misc tables and unbounded for everything else
+            public Builder cache(CachePolicy cachePolicy) {
+                this.cachePolicy = cachePolicy;
+                return this;
+            }
+
+            public Builder cacheSize(int size) {
+                if (size < 1 || size > CachePolicy.MAX_SIZE) {
+                    throw new IllegalArgumentException(
+                            "Cache size must be between 1 and " + CachePolicy.MAX_SIZE);
+                }
+                this.cacheSize = size;
+                return this;
+            }
+
+            public Builder tagPriority(Identifier id) {
+                tagPriority.add(id);
+                return this;
+            }
+
+            public Builder tagPriority(List<Identifier> ids) {
+                tagPriority.addAll(ids);
+                return this;
+            }
+
             public Builder parent(Identifier id) {
                 parents.add(id);
                 return this;
@@ -318,6 +1437,24 @@ public class DataTableRegistry implements SimpleSynchronousResourceReloadListene
                 return entry(id, value);
             }
 
+            // Matches every state of the block with the given properties, such as
+            // "minecraft:furnace[lit=true]"
+            public Builder state(String blockState, int value) {
+                stateEntries.put(blockState, value);
+                return this;
+            }
+
+            public Builder state(BlockState blockState, int value) {
+                return state(BlockArgumentParser.stringifyBlockState(blockState), value);
+            }
+
+            // Matches item stacks like an item predicate in commands, such as
+            // "minecraft:potion[potion_contents={potion:'minecraft:strength'}]"
+            public Builder component(String itemPredicate, int value) {
+                componentEntries.put(itemPredicate, value);
+                return this;
+            }
+
             public Builder tag(Identifier id, int value) {
                 entries.put(new TagEntryId(id, true), value);
                 return this;
@@ -328,8 +1465,25 @@ public class DataTableRegistry implements SimpleSynchronousResourceReloadListene
                 return tag(id, value);
             }
 
+            // Makes this a derived table, whose values are computed from its inputs
+            public Builder expression(String expression) {
+                this.expression = TableExpression.parse(expression)
+                        .getOrThrow(IllegalArgumentException::new);
+                return this;
+            }
+
+            public Builder input(String variable, Identifier table) {
+                inputs.put(variable, table);
+                return this;
+            }
+
             public DataTableEntry build() {
-                return new DataTableEntry(type, parents, defaultValue, entries);
+                return validateEntry(
+                        new DataTableEntry(type, parents, defaultValue, entries, conflictPolicy,
+                                tagPriority, stateEntries, componentEntries,
+                                cachePolicy == null ? CachePolicy.forType(type) : cachePolicy,
+                                cacheSize, inputs, expression)).getOrThrow(
+                        IllegalArgumentException::new);
             }
         }
     }
@@ -2,6 +2,7 @@ package io.github.drakonkinst.datatables;
 
 import com.mojang.brigadier.CommandDispatcher;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import net.fabricmc.api.ModInitializer;
@@ -32,6 +33,11 @@ public class DataTables implements ModInitializer {
         return INSTANCE.get(id);
     }
 
+    // Prefer this over get() for tables that are queried often, such as every tick
+    public static DataTableHandle handle(Identifier id) {
+        return INSTANCE.handle(id);
+    }
+
     public static Optional<DataTable> getOptional(Identifier id) {
         return INSTANCE.getOptional(id);
     }
@@ -44,11 +50,33 @@ public class DataTables implements ModInitializer {
         return INSTANCE.getDataTableIds();
     }
 
+    public static Optional<MultiColumnTable> getMultiColumnTable(Identifier id) {
+        return INSTANCE.getMultiColumnTable(id);
+    }
+
+    public static Collection<Identifier> getMultiColumnTableIds() {
+        return INSTANCE.getMultiColumnTableIds();
+    }
+
+    public static long getGeneration() {
+        return INSTANCE.getGeneration();
+    }
+
+    public static DataTableRegistry.Stats getStats() {
+        return INSTANCE.getStats();
+    }
+
     // Should only be called internally
     public static void syncDataTables(Map<Identifier, DataTable> dataTables) {
         INSTANCE.syncDataTables(dataTables);
     }
 
+    // Should only be called internally
+    public static void applySyncDelta(Map<Identifier, DataTable> changed,
+            Collection<Identifier> removed, Map<Identifier, List<String>> columns) {
+        INSTANCE.applySyncDelta(changed, removed, columns);
+    }
+
     @Override
     public void onInitialize() {
         // Create the registry
@@ -58,21 +86,34 @@ public class DataTables implements ModInitializer {
                     return INSTANCE;
                 });
 
-        // Resolve tags on load
+        // Resolve tags on load. Registries are also needed to parse item component entries,
+        // including on the client.
         CommonLifecycleEvents.TAGS_LOADED.register(((registries, client) -> {
+                INSTANCE.setRegistries(registries);
                 INSTANCE.resolve();
         }));
 
         PayloadTypeRegistry.playS2C().register(SyncPayload.ID, SyncPayload.CODEC);
+        PayloadTypeRegistry.playS2C()
+                .register(SyncManifestPayload.ID, SyncManifestPayload.CODEC);
+        PayloadTypeRegistry.playC2S().register(SyncRequestPayload.ID, SyncRequestPayload.CODEC);
 
-        // Add data tables to data pack syncing
+        // Add data tables to data pack syncing. Clients are sent a manifest first and then
+        // request only the tables they are missing.
         ServerLifecycleEvents.SYNC_DATA_PACK_CONTENTS.register(((player, joined) -> {
             if (!INSTANCE.isResolved()) {
                 LOGGER.error("Tags are not resolved on server side");
                 return;
             }
-            ServerPlayNetworking.send(player, INSTANCE.createSyncPacket());
+            ServerPlayNetworking.send(player, INSTANCE.createManifestPacket());
         }));
+        ServerPlayNetworking.registerGlobalReceiver(SyncRequestPayload.ID,
+                ((payload, context) -> {
+                    SyncPayload syncPayload = INSTANCE.createSyncPacket(payload.dataTableIds());
+                    if (syncPayload != null) {
+                        context.responseSender().sendPacket(syncPayload);
+                    }
+                }));
 
         // Register command
         CommandRegistrationCallback.EVENT.register(
@@ -0,0 +1,193 @@
+package io.github.drakonkinst.datatables;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.AbstractObject2IntMap;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+// An immutable map stored as parallel arrays sorted by key hash, found by binary search. Keys are
+// interned, and maps with identical content are deduplicated, so tables that end up with the
+// same entries share the same storage.
+final class FrozenEntryMap<K> extends AbstractObject2IntMap<K> {
+
+    // Rough sizes with compressed object pointers, for /table memory
+    private static final int OBJECT_HEADER_BYTES = 16;
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private static final Interner<Object> KEYS = Interners.newWeakInterner();
+    private static final Interner<FrozenEntryMap<?>> MAPS = Interners.newWeakInterner();
+
+    private final int[] hashes;
+    private final Object[] keys;
+    private final int[] values;
+    private final int hashCode;
+
+    private FrozenEntryMap(int[] hashes, Object[] keys, int[] values) {
+        this.hashes = hashes;
+        this.keys = keys;
+        this.values = values;
+        int hashCode = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            // Matches the hash of any other map with the same entries
+            hashCode += hashes[i] ^ values[i];
+        }
+        this.hashCode = hashCode;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K> FrozenEntryMap<K> copyOf(Object2IntMap<K> entries) {
+        if (entries instanceof FrozenEntryMap<K> frozen) {
+            return frozen;
+        }
+
+        int size = entries.size();
+        Object[] unsortedKeys = new Object[size];
+        int[] unsortedValues = new int[size];
+        int index = 0;
+        for (Object2IntMap.Entry<K> entry : entries.object2IntEntrySet()) {
+            unsortedKeys[index] = KEYS.intern(entry.getKey());
+            unsortedValues[index] = entry.getIntValue();
+            ++index;
+        }
+
+        // Equal hashes are ordered by name so that equal maps always have equal arrays
+        int[] order = new int[size];
+        for (int i = 0; i < size; ++i) {
+            order[i] = i;
+        }
+        IntArrays.quickSort(order, (a, b) -> {
+            int compare = Integer.compare(unsortedKeys[a].hashCode(), unsortedKeys[b].hashCode());
+            return compare != 0 ? compare
+                    : unsortedKeys[a].toString().compareTo(unsortedKeys[b].toString());
+        });
+
+        int[] hashes = new int[size];
+        Object[] keys = new Object[size];
+        int[] values = new int[size];
+        for (int i = 0; i < size; ++i) {
+            keys[i] = unsortedKeys[order[i]];
+            hashes[i] = keys[i].hashCode();
+            values[i] = unsortedValues[order[i]];
+        }
+        return (FrozenEntryMap<K>) MAPS.intern(new FrozenEntryMap<>(hashes, keys, values));
+    }
+
+    // Estimated size of an Object2IntOpenHashMap holding the same number of entries
+    static long estimateHashMapBytes(int size) {
+        int capacity = HashCommon.arraySize(size, Hash.DEFAULT_LOAD_FACTOR) + 1;
+        return OBJECT_HEADER_BYTES * 4L + ARRAY_HEADER_BYTES * 2L
+                + (long) capacity * (REFERENCE_BYTES + Integer.BYTES);
+    }
+
+    long estimateBytes() {
+        return OBJECT_HEADER_BYTES * 2L + ARRAY_HEADER_BYTES * 3L
+                + (long) keys.length * (Integer.BYTES + REFERENCE_BYTES + Integer.BYTES);
+    }
+
+    private int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        int hash = key.hashCode();
+        int index = Arrays.binarySearch(hashes, hash);
+        if (index < 0) {
+            return -1;
+        }
+        while (index > 0 && hashes[index - 1] == hash) {
+            --index;
+        }
+        for (; index < hashes.length && hashes[index] == hash; ++index) {
+            if (keys[index].equals(key)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getInt(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? defRetValue : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    // Instances are shared, so they must not be configured
+    @Override
+    public void defaultReturnValue(int rv) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public ObjectSet<Object2IntMap.Entry<K>> object2IntEntrySet() {
+        return new AbstractObjectSet<>() {
+            @Override
+            public ObjectIterator<Object2IntMap.Entry<K>> iterator() {
+                return new ObjectIterator<>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Object2IntMap.Entry<K> next() {
+                        if (index >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Object2IntMap.Entry<K> entry = new BasicEntry<>((K) keys[index],
+                                values[index]);
+                        ++index;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof FrozenEntryMap<?> other) {
+            return hashCode == other.hashCode && Arrays.equals(hashes, other.hashes)
+                    && Arrays.equals(values, other.values) && Arrays.equals(keys, other.keys);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -0,0 +1,250 @@
+package io.github.drakonkinst.datatables;
+
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.command.argument.ItemPredicateArgumentType;
+import net.minecraft.component.ComponentChanges;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.RegistryKeys;
+import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.registry.tag.TagKey;
+import net.minecraft.resource.featuretoggle.FeatureFlags;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+// Entries of an item table that match on item components, written like item predicates in
+// commands, such as "minecraft:potion[potion_contents={potion:'minecraft:strength'}]" or
+// "*[enchantments~[{enchantments:'minecraft:sharpness'}]]", or "#minecraft:swords[damage=0]" for
+// the items in a tag. Entries are grouped by the item they apply to and sorted most specific
+// first, so a stack only tests the entries for its own item. Stacks without component changes
+// match like their item's default stack, which is matched once up front. Other results are
+// memoized by item and component changes, since the same few variants tend to be queried over
+// and over.
+final class ItemComponentMatcher {
+
+    private static final int ITEM_RANK = 0;
+    private static final int TAG_RANK = 1;
+    private static final int WILDCARD_RANK = 2;
+
+    // The memo is cleared once it grows past this, rather than tracking recency
+    private static final int MAX_MEMOIZED = 4096;
+
+    // Indexed by item raw ID, null for items without component entries
+    private final ComponentEntry[][] entries;
+    // Indexed by item raw ID, the entry matching the item's default stack, or -1 if none do
+    private final int[] defaultMatches;
+    private final Map<StackKey, Integer> memo = new ConcurrentHashMap<>();
+
+    private ItemComponentMatcher(ComponentEntry[][] entries) {
+        this.entries = entries;
+        this.defaultMatches = new int[entries.length];
+        Arrays.fill(defaultMatches, -1);
+        for (int rawId = 0; rawId < entries.length; ++rawId) {
+            if (entries[rawId] != null) {
+                defaultMatches[rawId] = findMatch(entries[rawId],
+                        new ItemStack(Registries.ITEM.get(rawId)));
+            }
+        }
+    }
+
+    // Returns null if no entries are valid. Invalid entries are ignored with a warning, like
+    // other unknown identifiers.
+    @Nullable
+    static ItemComponentMatcher compile(Object2IntMap<String> componentEntries,
+            RegistryWrapper.WrapperLookup registries) {
+        ItemPredicateArgumentType argumentType = ItemPredicateArgumentType.itemPredicate(
+                CommandRegistryAccess.of(registries, FeatureFlags.FEATURE_MANAGER.getFeatureSet()));
+        List<List<ComponentEntry>> byItem = new ArrayList<>();
+        for (int rawId = 0; rawId < Registries.ITEM.size(); ++rawId) {
+            byItem.add(null);
+        }
+        List<ComponentEntry> wildcard = new ArrayList<>();
+
+        for (Object2IntMap.Entry<String> entry : componentEntries.object2IntEntrySet()) {
+            String key = entry.getKey();
+            ComponentEntry componentEntry;
+            try {
+                StringReader reader = new StringReader(key);
+                Predicate<ItemStack> predicate = argumentType.parse(reader);
+                if (reader.canRead()) {
+                    throw new IllegalArgumentException(
+                            "Unexpected trailing characters " + reader.getRemaining());
+                }
+                componentEntry = new ComponentEntry(key, predicate, getRank(key),
+                        countConditions(key), entry.getIntValue());
+            } catch (CommandSyntaxException | IllegalArgumentException e) {
+                DataTables.LOGGER.warn("Ignoring invalid item component entry {}: {}", key,
+                        e.getMessage());
+                continue;
+            }
+
+            String itemKey = key.substring(0, key.indexOf('['));
+            if (componentEntry.rank() == WILDCARD_RANK) {
+                wildcard.add(componentEntry);
+            } else if (componentEntry.rank() == TAG_RANK) {
+                // Tags are bound by the time tables compile, and compile again when tags change
+                TagKey<Item> tag = TagKey.of(RegistryKeys.ITEM,
+                        Identifier.of(itemKey.substring(1)));
+                for (RegistryEntry<Item> member : Registries.ITEM.iterateEntries(tag)) {
+                    addEntry(byItem, Registries.ITEM.getRawId(member.value()), componentEntry);
+                }
+            } else {
+                addEntry(byItem, DataTable.getRawId(Registries.ITEM, Identifier.of(itemKey)),
+                        componentEntry);
+            }
+        }
+
+        // Entries for a specific item come before tags, then wildcards, then entries with more
+        // conditions
+        Comparator<ComponentEntry> order = Comparator.comparingInt(ComponentEntry::rank)
+                .thenComparing(Comparator.comparingInt(ComponentEntry::conditions).reversed())
+                .thenComparing(ComponentEntry::key);
+        wildcard.sort(order);
+        boolean any = !wildcard.isEmpty();
+        ComponentEntry[][] entries = new ComponentEntry[byItem.size()][];
+        for (int rawId = 0; rawId < entries.length; ++rawId) {
+            List<ComponentEntry> itemEntries = byItem.get(rawId);
+            if (itemEntries == null && wildcard.isEmpty()) {
+                continue;
+            }
+            List<ComponentEntry> sorted = itemEntries == null ? new ArrayList<>()
+                    : new ArrayList<>(itemEntries);
+            sorted.sort(order);
+            sorted.addAll(wildcard);
+            entries[rawId] = sorted.toArray(ComponentEntry[]::new);
+            any = true;
+        }
+        return any ? new ItemComponentMatcher(entries) : null;
+    }
+
+    private static int getRank(String key) {
+        if (key.startsWith("*")) {
+            return WILDCARD_RANK;
+        }
+        return key.startsWith("#") ? TAG_RANK : ITEM_RANK;
+    }
+
+    private static void addEntry(List<List<ComponentEntry>> byItem, int rawId,
+            ComponentEntry componentEntry) {
+        if (rawId < 0 || rawId >= byItem.size()) {
+            return;
+        }
+        if (byItem.get(rawId) == null) {
+            byItem.set(rawId, new ArrayList<>());
+        }
+        byItem.get(rawId).add(componentEntry);
+    }
+
+    // Counts the top-level conditions in the brackets, skipping over nested values and strings
+    private static int countConditions(String key) {
+        int conditions = 1;
+        int depth = 0;
+        char quote = 0;
+        for (int i = key.indexOf('['); i < key.length(); ++i) {
+            char c = key.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    ++i;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '[' || c == '{' || c == '(') {
+                ++depth;
+            } else if (c == ']' || c == '}' || c == ')') {
+                --depth;
+            } else if (c == ',' && depth == 1) {
+                ++conditions;
+            }
+        }
+        return conditions;
+    }
+
+    boolean hasEntries(int rawId) {
+        return rawId >= 0 && rawId < entries.length && entries[rawId] != null;
+    }
+
+    // For stacks without component changes. The item must have entries.
+    int matchDefault(int rawId, int itemValue) {
+        int match = defaultMatches[rawId];
+        return match < 0 ? itemValue : entries[rawId][match].value();
+    }
+
+    // Returns null if the stack's item and components haven't been matched yet
+    @Nullable
+    Integer getMemoized(StackKey key) {
+        return memo.get(key);
+    }
+
+    // Returns the value of the most specific matching entry, or the item's own value if none
+    // match, and memoizes it. The item must have entries.
+    int match(ItemStack stack, StackKey key, int rawId, int itemValue) {
+        int value = matchUncached(stack, rawId, itemValue);
+        if (memo.size() >= MAX_MEMOIZED) {
+            memo.clear();
+        }
+        memo.put(key, value);
+        return value;
+    }
+
+    // Tests the entries without going through the memo
+    int matchUncached(ItemStack stack, int rawId, int itemValue) {
+        int match = findMatch(entries[rawId], stack);
+        return match < 0 ? itemValue : entries[rawId][match].value();
+    }
+
+    private static int findMatch(ComponentEntry[] itemEntries, ItemStack stack) {
+        for (int i = 0; i < itemEntries.length; ++i) {
+            if (itemEntries[i].predicate().test(stack)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int getMemoizedCount() {
+        return memo.size();
+    }
+
+    private record ComponentEntry(String key, Predicate<ItemStack> predicate, int rank,
+                                  int conditions, int value) {}
+
+    // Hashing the changes hashes every changed component's value, so it is only done once per
+    // query, rather than again when memoizing a miss
+    static final class StackKey {
+
+        private final Item item;
+        private final ComponentChanges changes;
+        private final int hash;
+
+        StackKey(Item item, ComponentChanges changes) {
+            this.item = item;
+            this.changes = changes;
+            this.hash = 31 * item.hashCode() + changes.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof StackKey other && item == other.item
+                    && hash == other.hash && changes.equals(other.changes));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
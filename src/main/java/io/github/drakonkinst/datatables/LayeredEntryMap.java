@@ -0,0 +1,172 @@
+package io.github.drakonkinst.datatables;
+
+import it.unimi.dsi.fastutil.objects.AbstractObject2IntMap;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.Nullable;
+
+// An immutable map of entries layered over a parent map, which is shared rather than copied.
+// Each layer is frozen, and entries in a layer shadow the same keys further down. Lookups walk
+// the layers, so chains are flattened into a new base once they get too deep.
+final class LayeredEntryMap<K> extends AbstractObject2IntMap<K> {
+
+    static final int MAX_DEPTH = 16;
+
+    private final FrozenEntryMap<K> entries;
+    @Nullable
+    private final LayeredEntryMap<K> parent;
+    private final int depth;
+    // Counting requires walking every layer, so it is only done when needed. Racing threads
+    // compute the same value.
+    private volatile int size = -1;
+
+    private LayeredEntryMap(Object2IntMap<K> entries, @Nullable LayeredEntryMap<K> parent) {
+        this.entries = FrozenEntryMap.copyOf(entries);
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
+
+    static <K> LayeredEntryMap<K> of(Object2IntMap<K> entries) {
+        return new LayeredEntryMap<>(entries, null);
+    }
+
+    LayeredEntryMap<K> with(Object2IntMap<K> entries) {
+        if (entries.isEmpty()) {
+            return this;
+        }
+        LayeredEntryMap<K> base = depth + 1 >= MAX_DEPTH ? of(flatten()) : this;
+        return new LayeredEntryMap<>(entries, base);
+    }
+
+    private Object2IntMap<K> flatten() {
+        Object2IntMap<K> flat = new Object2IntOpenHashMap<>(size());
+        for (Object2IntMap.Entry<K> entry : object2IntEntrySet()) {
+            flat.put(entry.getKey(), entry.getIntValue());
+        }
+        return flat;
+    }
+
+    // Visits the storage of every layer, from the top down
+    void forEachLayer(Consumer<FrozenEntryMap<K>> consumer) {
+        for (LayeredEntryMap<K> layer = this; layer != null; layer = layer.parent) {
+            consumer.accept(layer.entries);
+        }
+    }
+
+    @Override
+    public int getInt(Object key) {
+        for (LayeredEntryMap<K> layer = this; layer != null; layer = layer.parent) {
+            if (layer.entries.containsKey(key)) {
+                return layer.entries.getInt(key);
+            }
+        }
+        return defRetValue;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        for (LayeredEntryMap<K> layer = this; layer != null; layer = layer.parent) {
+            if (layer.entries.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (LayeredEntryMap<K> layer = this; layer != null; layer = layer.parent) {
+            if (!layer.entries.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        int size = this.size;
+        if (size < 0) {
+            size = 0;
+            for (ObjectIterator<Object2IntMap.Entry<K>> iterator = new EntryIterator();
+                    iterator.hasNext(); iterator.next()) {
+                ++size;
+            }
+            this.size = size;
+        }
+        return size;
+    }
+
+    @Override
+    public ObjectSet<Object2IntMap.Entry<K>> object2IntEntrySet() {
+        return new AbstractObjectSet<>() {
+            @Override
+            public ObjectIterator<Object2IntMap.Entry<K>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return LayeredEntryMap.this.size();
+            }
+        };
+    }
+
+    // Visits each layer from the top down, skipping entries shadowed by a layer above
+    private final class EntryIterator implements ObjectIterator<Object2IntMap.Entry<K>> {
+
+        @Nullable
+        private LayeredEntryMap<K> layer = LayeredEntryMap.this;
+        private ObjectIterator<Object2IntMap.Entry<K>> layerEntries = entries.object2IntEntrySet()
+                .iterator();
+        @Nullable
+        private Object2IntMap.Entry<K> next = advance();
+
+        @Nullable
+        private Object2IntMap.Entry<K> advance() {
+            while (layer != null) {
+                while (layerEntries.hasNext()) {
+                    Object2IntMap.Entry<K> entry = layerEntries.next();
+                    if (!isShadowed(entry.getKey(), layer)) {
+                        return entry;
+                    }
+                }
+                layer = layer.parent;
+                if (layer != null) {
+                    layerEntries = layer.entries.object2IntEntrySet().iterator();
+                }
+            }
+            return null;
+        }
+
+        private boolean isShadowed(K key, LayeredEntryMap<K> owner) {
+            for (LayeredEntryMap<K> above = LayeredEntryMap.this; above != owner;
+                    above = above.parent) {
+                if (above.entries.containsKey(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Object2IntMap.Entry<K> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Object2IntMap.Entry<K> current = next;
+            next = advance();
+            return current;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package io.github.drakonkinst.datatables;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.List;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityType;
+import net.minecraft.item.Item;
+import net.minecraft.registry.DefaultedRegistry;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+// Several columns of values sharing the same keys, loaded from one data table file that lists
+// "columns". Each column is also an ordinary data table named after the table and the column,
+// such as "my_mod:block_stats/weight", so it resolves, inherits and syncs like any other table.
+// Values are copied out column-wise once the columns are compiled, so a key is resolved once
+// and every column of its row is read straight from an array. Row views are created along with
+// the values, so looking up a row doesn't allocate.
+public final class MultiColumnTable {
+
+    private final Identifier id;
+    private final List<String> columns;
+    private final DataTableType type;
+    private final Object2IntMap<String> columnIndices = new Object2IntOpenHashMap<>();
+    // Every layout below is indexed by column first, then by row
+    private final int[][] defaultValues;
+    // Rows for identifiers with their own entry in any column
+    private final Object2IntMap<Identifier> elementRows = new Object2IntOpenHashMap<>();
+    private final int[][] elementValues;
+    // Rows by registry raw ID and block state raw ID, only available for typed tables
+    @Nullable
+    private final int[][] rawIdValues;
+    @Nullable
+    private final int[][] stateValues;
+    // Row views over the layouts above, indexed by row
+    private final Row defaultRow;
+    private final Row[] elementRowViews;
+    @Nullable
+    private final Row[] rawIdRows;
+    @Nullable
+    private final Row[] stateRows;
+
+    // Columns must already be compiled
+    MultiColumnTable(Identifier id, List<String> columns, List<DataTable> columnTables) {
+        this.id = id;
+        this.columns = List.copyOf(columns);
+        this.type = columnTables.getFirst().getType();
+        this.columnIndices.defaultReturnValue(-1);
+        this.elementRows.defaultReturnValue(-1);
+
+        int size = columns.size();
+        this.defaultValues = new int[size][1];
+        for (int column = 0; column < size; ++column) {
+            this.columnIndices.put(columns.get(column), column);
+            this.defaultValues[column][0] = columnTables.get(column).getDefaultValue();
+        }
+
+        for (DataTable columnTable : columnTables) {
+            for (Identifier key : columnTable.getElementEntryTable().keySet()) {
+                if (!this.elementRows.containsKey(key)) {
+                    this.elementRows.put(key, this.elementRows.size());
+                }
+            }
+        }
+        this.elementValues = new int[size][this.elementRows.size()];
+        for (int column = 0; column < size; ++column) {
+            DataTable columnTable = columnTables.get(column);
+            for (Object2IntMap.Entry<Identifier> row : this.elementRows.object2IntEntrySet()) {
+                this.elementValues[column][row.getIntValue()] = columnTable.computeValue(
+                        row.getKey());
+            }
+        }
+
+        this.rawIdValues = copyColumns(columnTables, false);
+        this.stateValues = copyColumns(columnTables, true);
+
+        this.defaultRow = new Row(defaultValues, 0);
+        this.elementRowViews = createRows(elementValues);
+        this.rawIdRows = rawIdValues == null ? null : createRows(rawIdValues);
+        this.stateRows = stateValues == null ? null : createRows(stateValues);
+    }
+
+    private Row[] createRows(int[][] values) {
+        Row[] rows = new Row[values[0].length];
+        for (int index = 0; index < rows.length; ++index) {
+            rows[index] = new Row(values, index);
+        }
+        return rows;
+    }
+
+    @Nullable
+    private static int[][] copyColumns(List<DataTable> columnTables, boolean states) {
+        boolean any = false;
+        boolean all = true;
+        for (DataTable columnTable : columnTables) {
+            boolean compiled = (states ? columnTable.getCompiledStateValues()
+                    : columnTable.getCompiledValues()) != null;
+            any |= compiled;
+            all &= compiled;
+        }
+        if (!any || (!states && !all)) {
+            return null;
+        }
+
+        int[][] values = new int[columnTables.size()][];
+        for (int column = 0; column < values.length; ++column) {
+            DataTable columnTable = columnTables.get(column);
+            int[] compiled = states ? columnTable.getCompiledStateValues()
+                    : columnTable.getCompiledValues();
+            // Columns without state entries give every state its block's value
+            values[column] = compiled != null ? compiled : expandToStates(columnTable);
+            if (values[column] == null) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    @Nullable
+    private static int[] expandToStates(DataTable columnTable) {
+        int[] blockValues = columnTable.getCompiledValues();
+        if (blockValues == null) {
+            return null;
+        }
+        int[] values = new int[Block.STATE_IDS.size()];
+        for (int stateId = 0; stateId < values.length; ++stateId) {
+            BlockState state = Block.STATE_IDS.get(stateId);
+            int rawId = state == null ? -1 : Registries.BLOCK.getRawId(state.getBlock());
+            values[stateId] = rawId >= 0 && rawId < blockValues.length ? blockValues[rawId]
+                    : columnTable.getDefaultValue();
+        }
+        return values;
+    }
+
+    public Row row(Identifier id) {
+        int elementRow = elementRows.getInt(id);
+        if (elementRow >= 0) {
+            return elementRowViews[elementRow];
+        }
+        DefaultedRegistry<?> registry = type.getRegistry();
+        if (rawIdRows != null && registry != null) {
+            return rawIdRow(DataTable.getRawId(registry, id));
+        }
+        return defaultRow;
+    }
+
+    public Row row(Item item) {
+        if (type == DataTableType.ITEM && rawIdRows != null) {
+            return rawIdRow(Registries.ITEM.getRawId(item));
+        }
+        return row(Registries.ITEM.getId(item));
+    }
+
+    public Row row(Entity entity) {
+        EntityType<?> entityType = entity.getType();
+        if (type == DataTableType.ENTITY && rawIdRows != null) {
+            return rawIdRow(Registries.ENTITY_TYPE.getRawId(entityType));
+        }
+        return row(EntityType.getId(entityType));
+    }
+
+    public Row row(BlockState blockState) {
+        if (stateRows != null) {
+            int stateId = Block.getRawIdFromState(blockState);
+            if (stateId >= 0 && stateId < stateRows.length) {
+                return stateRows[stateId];
+            }
+        }
+        return row(blockState.getBlock());
+    }
+
+    public Row row(Block block) {
+        if (type == DataTableType.BLOCK && rawIdRows != null) {
+            return rawIdRow(Registries.BLOCK.getRawId(block));
+        }
+        return row(Registries.BLOCK.getId(block));
+    }
+
+    private Row rawIdRow(int rawId) {
+        if (rawIdRows != null && rawId >= 0 && rawId < rawIdRows.length) {
+            return rawIdRows[rawId];
+        }
+        return defaultRow;
+    }
+
+    public Identifier getId() {
+        return id;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    // Returns -1 if there is no such column
+    public int getColumnIndex(String column) {
+        return columnIndices.getInt(column);
+    }
+
+    public DataTableType getType() {
+        return type;
+    }
+
+    public static Identifier getColumnId(Identifier id, String column) {
+        return id.withSuffixedPath("/" + column);
+    }
+
+    // The values of one key across every column. Look up column indices once with
+    // getColumnIndex() rather than reading columns by name in hot code.
+    public final class Row {
+
+        private final int[][] values;
+        private final int index;
+
+        private Row(int[][] values, int index) {
+            this.values = values;
+            this.index = index;
+        }
+
+        public int get(int column) {
+            return values[column][index];
+        }
+
+        public int get(String column) {
+            int columnIndex = getColumnIndex(column);
+            if (columnIndex < 0) {
+                throw new IllegalArgumentException(
+                        "Data table " + id + " has no column " + column);
+            }
+            return get(columnIndex);
+        }
+
+        public int size() {
+            return values.length;
+        }
+    }
+}
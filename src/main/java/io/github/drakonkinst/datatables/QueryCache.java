@@ -0,0 +1,142 @@
+package io.github.drakonkinst.datatables;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+// Memoizes query values by identifier. Every implementation is safe to use from any thread.
+abstract class QueryCache {
+
+    static final QueryCache NONE = new QueryCache() {
+        @Override
+        @Nullable
+        Integer get(Identifier id) {
+            return null;
+        }
+
+        @Override
+        void put(Identifier id, int value) {}
+
+        @Override
+        int size() {
+            return 0;
+        }
+    };
+
+    @Nullable
+    abstract Integer get(Identifier id);
+
+    abstract void put(Identifier id, int value);
+
+    abstract int size();
+
+    long getEvictionCount() {
+        return 0L;
+    }
+
+    static final class Unbounded extends QueryCache {
+
+        private final Map<Identifier, Integer> values = new ConcurrentHashMap<>();
+
+        @Override
+        @Nullable
+        Integer get(Identifier id) {
+            return values.get(id);
+        }
+
+        @Override
+        void put(Identifier id, int value) {
+            values.putIfAbsent(id, value);
+        }
+
+        @Override
+        int size() {
+            return values.size();
+        }
+    }
+
+    // CLOCK eviction: lookups only set a flag on the node they find, so reads never lock. Inserts
+    // lock and sweep a hand around the ring, giving recently read nodes a second chance. The ring
+    // starts empty and doubles as values are added, so tables that are rarely queried by
+    // identifier never pay for their full capacity.
+    static final class Bounded extends QueryCache {
+
+        private static final int INITIAL_RING_SIZE = 16;
+        private static final Node[] EMPTY_RING = new Node[0];
+
+        private final Map<Identifier, Node> nodes = new ConcurrentHashMap<>();
+        private final int capacity;
+        private Node[] ring = EMPTY_RING;
+        private final LongAdder evictions = new LongAdder();
+        private int size = 0;
+        private int hand = 0;
+
+        Bounded(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        @Nullable
+        Integer get(Identifier id) {
+            Node node = nodes.get(id);
+            if (node == null) {
+                return null;
+            }
+            // Avoid writing to shared memory when the flag is already set
+            if (!node.referenced) {
+                node.referenced = true;
+            }
+            return node.value;
+        }
+
+        @Override
+        synchronized void put(Identifier id, int value) {
+            if (nodes.containsKey(id)) {
+                return;
+            }
+            Node node = new Node(id, value);
+            if (size == ring.length && size < capacity) {
+                ring = Arrays.copyOf(ring, Math.min(capacity, Math.max(INITIAL_RING_SIZE,
+                        ring.length * 2)));
+            }
+            if (size < ring.length) {
+                ring[size++] = node;
+            } else {
+                while (ring[hand].referenced) {
+                    ring[hand].referenced = false;
+                    hand = (hand + 1) % ring.length;
+                }
+                nodes.remove(ring[hand].id);
+                ring[hand] = node;
+                hand = (hand + 1) % ring.length;
+                evictions.increment();
+            }
+            nodes.put(id, node);
+        }
+
+        @Override
+        int size() {
+            return nodes.size();
+        }
+
+        @Override
+        long getEvictionCount() {
+            return evictions.sum();
+        }
+
+        private static final class Node {
+
+            private final Identifier id;
+            private final int value;
+            private volatile boolean referenced = false;
+
+            private Node(Identifier id, int value) {
+                this.id = id;
+                this.value = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.drakonkinst.datatables;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import java.util.Arrays;
+import net.minecraft.util.Identifier;
+
+// Every key of a data table sorted by value, for finding keys by value without querying each one.
+// Keys are raw IDs in the table's registry for compiled typed tables, so every element is
+// included with its expanded value. Otherwise keys index the table's element entries, and
+// getId() maps either kind back to an identifier.
+public final class ReverseIndex {
+
+    // Each entry packs the value into the high bits and the key into the low bits, so sorting
+    // orders by value and then by key
+    private final long[] sorted;
+    private final Identifier[] ids;
+    private final boolean rawIds;
+
+    ReverseIndex(int[] values, Identifier[] ids, boolean rawIds) {
+        this.sorted = new long[values.length];
+        for (int key = 0; key < values.length; ++key) {
+            this.sorted[key] = ((long) values[key] << 32) | key;
+        }
+        Arrays.sort(this.sorted);
+        this.ids = ids;
+        this.rawIds = rawIds;
+    }
+
+    private static int valueOf(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    private static int keyOf(long entry) {
+        return (int) entry;
+    }
+
+    // Keys with a value from min to max inclusive, in ascending order of value
+    public IntList range(int min, int max) {
+        if (min > max) {
+            return new IntArrayList();
+        }
+        int from = lowerBound(min);
+        int to = max == Integer.MAX_VALUE ? sorted.length : lowerBound(max + 1);
+        IntList keys = new IntArrayList(to - from);
+        for (int i = from; i < to; ++i) {
+            keys.add(keyOf(sorted[i]));
+        }
+        return keys;
+    }
+
+    // The n keys with the highest values, in descending order of value
+    public IntList topN(int n) {
+        int count = Math.min(Math.max(n, 0), sorted.length);
+        IntList keys = new IntArrayList(count);
+        for (int i = sorted.length - 1; i >= sorted.length - count; --i) {
+            keys.add(keyOf(sorted[i]));
+        }
+        return keys;
+    }
+
+    public IntList keysWithValue(int value) {
+        return range(value, value);
+    }
+
+    // Index of the first entry with a value of at least the given value
+    private int lowerBound(int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (valueOf(sorted[mid]) < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public Identifier getId(int key) {
+        return ids[key];
+    }
+
+    // Whether keys are raw IDs in the table's registry, rather than indices of element entries
+    public boolean usesRawIds() {
+        return rawIds;
+    }
+
+    public int size() {
+        return sorted.length;
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.drakonkinst.datatables;
+
+import java.util.List;
+import java.util.Map;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+// Sent to the client first, listing the content hash of every data table so that the client
+// only needs to request tables it doesn't already have, along with the columns of every
+// multi-column table. Pre-encoded like SyncPayload.
+public record SyncManifestPayload(Map<Identifier, Long> contentHashes,
+                                  Map<Identifier, List<String>> columns,
+                                  @Nullable byte[] encoded) implements CustomPayload {
+
+    public static final Id<SyncManifestPayload> ID = new CustomPayload.Id<>(
+            DataTables.id("sync_manifest"));
+    public static final PacketCodec<RegistryByteBuf, SyncManifestPayload> CODEC = PacketCodec.of(
+            SyncManifestPayload::write,
+            buf -> DataTablePacketCodecs.MANIFEST.decode(buf));
+
+    public SyncManifestPayload(Map<Identifier, Long> contentHashes,
+            Map<Identifier, List<String>> columns) {
+        this(contentHashes, columns, null);
+    }
+
+    private void write(RegistryByteBuf buf) {
+        if (this.encoded != null) {
+            buf.writeBytes(this.encoded);
+        } else {
+            DataTablePacketCodecs.MANIFEST.encode(buf, this);
+        }
+    }
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -1,19 +1,39 @@
 package io.github.drakonkinst.datatables;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import net.minecraft.network.RegistryByteBuf;
 import net.minecraft.network.codec.PacketCodec;
-import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.encoding.VarInts;
 import net.minecraft.network.packet.CustomPayload;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 
-public record SyncPayload(Map<Identifier, DataTable> dataTables) implements CustomPayload {
+// If already encoded, each table's bytes are written as they are for every player instead of
+// encoding again. The tables are always kept as well, since local connections pass payloads
+// without encoding.
+public record SyncPayload(Map<Identifier, DataTable> dataTables, @Nullable List<byte[]> encoded)
+        implements CustomPayload {
 
     public static final Id<SyncPayload> ID = new CustomPayload.Id<>(DataTables.id("sync"));
-    public static final PacketCodec<RegistryByteBuf, SyncPayload> CODEC = PacketCodec.tuple(
-            PacketCodecs.map(HashMap::new, Identifier.PACKET_CODEC, DataTable.PACKET_CODEC),
-            SyncPayload::dataTables, SyncPayload::new);
+    public static final PacketCodec<RegistryByteBuf, SyncPayload> CODEC = PacketCodec.of(
+            SyncPayload::write,
+            buf -> new SyncPayload(DataTablePacketCodecs.SYNC_TABLES.decode(buf)));
+
+    public SyncPayload(Map<Identifier, DataTable> dataTables) {
+        this(dataTables, null);
+    }
+
+    private void write(RegistryByteBuf buf) {
+        if (this.encoded != null) {
+            VarInts.write(buf, this.encoded.size());
+            for (byte[] encodedTable : this.encoded) {
+                buf.writeBytes(encodedTable);
+            }
+        } else {
+            DataTablePacketCodecs.SYNC_TABLES.encode(buf, this.dataTables);
+        }
+    }
 
     @Override
     public Id<? extends CustomPayload> getId() {
@@ -0,0 +1,23 @@
+package io.github.drakonkinst.datatables;
+
+import java.util.List;
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+// Sent by the client in response to a manifest, listing the tables it is missing or has stale
+public record SyncRequestPayload(List<Identifier> dataTableIds) implements CustomPayload {
+
+    public static final Id<SyncRequestPayload> ID = new CustomPayload.Id<>(
+            DataTables.id("sync_request"));
+    public static final PacketCodec<RegistryByteBuf, SyncRequestPayload> CODEC = PacketCodec.tuple(
+            Identifier.PACKET_CODEC.collect(PacketCodecs.toList()),
+            SyncRequestPayload::dataTableIds, SyncRequestPayload::new);
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
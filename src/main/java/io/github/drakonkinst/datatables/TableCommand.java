@@ -5,13 +5,23 @@ import static net.minecraft.server.command.CommandManager.literal;
 
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.Dynamic2CommandExceptionType;
 import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
 import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
 import com.mojang.brigadier.suggestion.SuggestionProvider;
+import it.unimi.dsi.fastutil.ints.IntList;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 import net.minecraft.command.CommandRegistryAccess;
 import net.minecraft.command.CommandSource;
 import net.minecraft.command.argument.BlockPosArgumentType;
@@ -20,16 +30,30 @@ import net.minecraft.command.argument.IdentifierArgumentType;
 import net.minecraft.command.argument.ItemSlotArgumentType;
 import net.minecraft.command.argument.ItemStackArgument;
 import net.minecraft.command.argument.ItemStackArgumentType;
+import net.minecraft.command.argument.NumberRangeArgumentType;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.EquipmentSlot;
+import net.minecraft.entity.InventoryOwner;
+import net.minecraft.entity.LivingEntity;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.inventory.Inventory;
 import net.minecraft.inventory.StackReference;
+import net.minecraft.item.ItemStack;
+import net.minecraft.predicate.NumberRange;
 import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.GameRules;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
 
 public class TableCommand {
 
     public static final int PERMISSION_LEVEL_GAMEMASTER = 2;
+    private static final int MAX_FOUND_KEYS_SHOWN = 50;
     private static final SuggestionProvider<ServerCommandSource> SUGGESTION_PROVIDER = (context, builder) -> {
         Collection<Identifier> dataTableIds = DataTables.getDataTableIds();
         return CommandSource.suggestIdentifiers(dataTableIds.stream(), builder);
@@ -38,12 +62,42 @@ public class TableCommand {
             name -> Text.stringifiedTranslatable("commands.table.tableNotFound", name));
     private static final SimpleCommandExceptionType SLOT_NOT_FOUND = new SimpleCommandExceptionType(
             Text.translatable("commands.table.slotNotFound"));
+    private static final DynamicCommandExceptionType NOTHING_TO_SAMPLE_EXCEPTION = new DynamicCommandExceptionType(
+            name -> Text.stringifiedTranslatable("commands.table.sample.empty", name));
+    private static final Dynamic2CommandExceptionType TOO_MANY_BLOCKS_EXCEPTION = new Dynamic2CommandExceptionType(
+            (maxCount, count) -> Text.stringifiedTranslatable("commands.table.aggregate.tooManyBlocks",
+                    maxCount, count));
 
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher,
             CommandRegistryAccess registryAccess) {
-        dispatcher.register(literal("table").requires(
+        LiteralArgumentBuilder<ServerCommandSource> root = literal("table").requires(
                         source -> source.hasPermissionLevel(PERMISSION_LEVEL_GAMEMASTER))
                 .then(literal("list").executes(TableCommand::executeList))
+                .then(literal("stats").executes(TableCommand::executeStats)
+                        .then(argument("data_table_id", IdentifierArgumentType.identifier())
+                                .suggests(SUGGESTION_PROVIDER)
+                                .executes(TableCommand::executeTableStats)))
+                .then(literal("memory").executes(TableCommand::executeMemory)
+                        .then(argument("data_table_id", IdentifierArgumentType.identifier())
+                                .suggests(SUGGESTION_PROVIDER)
+                                .executes(TableCommand::executeTableMemory)))
+                .then(literal("find").then(
+                        argument("data_table_id", IdentifierArgumentType.identifier()).suggests(
+                                        SUGGESTION_PROVIDER)
+                                .then(literal("top").then(
+                                        argument("count", IntegerArgumentType.integer(1)).executes(
+                                                TableCommand::executeFindTop)))
+                                .then(argument("range", NumberRangeArgumentType.intRange()).executes(
+                                        TableCommand::executeFindRange))))
+                .then(literal("sample").then(
+                        argument("data_table_id", IdentifierArgumentType.identifier()).suggests(
+                                        SUGGESTION_PROVIDER)
+                                .executes(TableCommand::executeSample)
+                                .then(literal("query").then(
+                                        argument("value_table_id",
+                                                IdentifierArgumentType.identifier()).suggests(
+                                                        SUGGESTION_PROVIDER)
+                                                .executes(TableCommand::executeSampleQuery)))))
                 .then(literal("get").then(
                         argument("data_table_id", IdentifierArgumentType.identifier()).suggests(
                                         SUGGESTION_PROVIDER)
@@ -60,7 +114,26 @@ public class TableCommand {
                                                         TableCommand::executeGetItemSlot))))
                                 .then(literal("item").then(argument("item",
                                         ItemStackArgumentType.itemStack(registryAccess)).executes(
-                                        TableCommand::executeGetItemId))))));
+                                        TableCommand::executeGetItemId)))));
+        for (Aggregate aggregate : Aggregate.values()) {
+            root.then(literal(aggregate.getName()).then(
+                    argument("data_table_id", IdentifierArgumentType.identifier()).suggests(
+                                    SUGGESTION_PROVIDER)
+                            .then(literal("blocks").then(
+                                    argument("from", BlockPosArgumentType.blockPos()).then(
+                                            argument("to", BlockPosArgumentType.blockPos()).executes(
+                                                    context -> executeAggregateBlocks(context,
+                                                            aggregate)))))
+                            .then(literal("entities").then(
+                                    argument("targets", EntityArgumentType.entities()).executes(
+                                            context -> executeAggregateEntities(context,
+                                                    aggregate))))
+                            .then(literal("inventory").then(
+                                    argument("targets", EntityArgumentType.entities()).executes(
+                                            context -> executeAggregateInventory(context,
+                                                    aggregate))))));
+        }
+        dispatcher.register(root);
     }
 
     private static int executeList(CommandContext<ServerCommandSource> context) {
@@ -82,6 +155,176 @@ public class TableCommand {
         return Command.SINGLE_SUCCESS;
     }
 
+    private static int executeStats(CommandContext<ServerCommandSource> context) {
+        DataTableRegistry.Stats stats = DataTables.getStats();
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.stats", stats.tables(),
+                        stats.generation(), stats.tablesParsed(), toMillis(stats.loadTime()),
+                        stats.tablesRebuilt(), toMillis(stats.resolveTime()),
+                        stats.payloadsEncoded(), stats.bytesEncoded(),
+                        toMillis(stats.encodeTime()), stats.payloadsReused(),
+                        stats.bytesReused()), false);
+        return stats.tables();
+    }
+
+    private static int executeTableStats(CommandContext<ServerCommandSource> context)
+            throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        Optional<DataTable> table = DataTables.getOptional(id);
+        if (table.isEmpty()) {
+            throw UNKNOWN_TABLE_EXCEPTION.create(id.toString());
+        }
+
+        DataTable dataTable = table.get();
+        long queries = dataTable.getQueryCount();
+        long misses = dataTable.getMissCount();
+        String hitRatio = toPercent(queries - misses, queries);
+        // Only counts queries by identifier, since those are the only ones using the cache
+        long cacheHits = dataTable.getCacheHitCount();
+        String cacheHitRatio = toPercent(cacheHits, cacheHits + misses);
+        int cached = dataTable.getCachedCount();
+        long evictions = dataTable.getEvictionCount();
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.stats.table", id.toString(),
+                        queries, misses, hitRatio), false);
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.stats.cache",
+                        dataTable.getCachePolicy().asString(), cacheHitRatio, cached,
+                        dataTable.getMemoizedStackCount(), evictions), false);
+        return (int) Math.min(queries, Integer.MAX_VALUE);
+    }
+
+    private static int executeMemory(CommandContext<ServerCommandSource> context) {
+        Collection<Identifier> dataTableIds = DataTables.getDataTableIds();
+        long unfrozenBytes = 0L;
+        // Shared storage is only counted once
+        Set<FrozenEntryMap<?>> storage = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Identifier id : dataTableIds) {
+            DataTable dataTable = DataTables.get(id);
+            unfrozenBytes += dataTable.estimateUnfrozenBytes();
+            dataTable.forEachStorage(storage::add);
+        }
+        long frozenBytes = sumBytes(storage);
+        long unfrozenTotal = unfrozenBytes;
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.memory", dataTableIds.size(),
+                        unfrozenTotal, frozenBytes, storage.size()), false);
+        return (int) Math.min(frozenBytes, Integer.MAX_VALUE);
+    }
+
+    private static int executeTableMemory(CommandContext<ServerCommandSource> context)
+            throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        Optional<DataTable> table = DataTables.getOptional(id);
+        if (table.isEmpty()) {
+            throw UNKNOWN_TABLE_EXCEPTION.create(id.toString());
+        }
+
+        Set<FrozenEntryMap<?>> storage = Collections.newSetFromMap(new IdentityHashMap<>());
+        table.get().forEachStorage(storage::add);
+        long frozenBytes = sumBytes(storage);
+        long unfrozenBytes = table.get().estimateUnfrozenBytes();
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.memory.table",
+                        id.toString(), unfrozenBytes, frozenBytes), false);
+        return (int) Math.min(frozenBytes, Integer.MAX_VALUE);
+    }
+
+    private static long sumBytes(Set<FrozenEntryMap<?>> storage) {
+        long bytes = 0L;
+        for (FrozenEntryMap<?> entries : storage) {
+            bytes += entries.estimateBytes();
+        }
+        return bytes;
+    }
+
+    private static String toPercent(long count, long total) {
+        return String.format(Locale.ROOT, "%.1f", total == 0 ? 0.0 : 100.0 * count / total);
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+
+    private static int executeFindRange(CommandContext<ServerCommandSource> context)
+            throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        ReverseIndex reverseIndex = getDataTable(context).getReverseIndex();
+        NumberRange.IntRange range = NumberRangeArgumentType.IntRangeArgumentType.getRangeArgument(
+                context, "range");
+        IntList keys = reverseIndex.range(range.min().orElse(Integer.MIN_VALUE),
+                range.max().orElse(Integer.MAX_VALUE));
+        sendFoundKeys(context, id, reverseIndex, keys);
+        return keys.size();
+    }
+
+    private static int executeFindTop(CommandContext<ServerCommandSource> context)
+            throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        ReverseIndex reverseIndex = getDataTable(context).getReverseIndex();
+        IntList keys = reverseIndex.topN(IntegerArgumentType.getInteger(context, "count"));
+        sendFoundKeys(context, id, reverseIndex, keys);
+        return keys.size();
+    }
+
+    private static void sendFoundKeys(CommandContext<ServerCommandSource> context, Identifier id,
+            ReverseIndex reverseIndex, IntList keys) {
+        StringBuilder str = new StringBuilder();
+        int shown = Math.min(keys.size(), MAX_FOUND_KEYS_SHOWN);
+        for (int i = 0; i < shown; ++i) {
+            if (i > 0) {
+                str.append(", ");
+            }
+            str.append(reverseIndex.getId(keys.getInt(i)));
+        }
+        if (shown < keys.size()) {
+            str.append(", ...");
+        }
+        final String keyListStr = str.toString();
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.find", keys.size(),
+                        id.toString()).append(keyListStr), false);
+    }
+
+    private static Identifier sample(CommandContext<ServerCommandSource> context)
+            throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        Optional<Identifier> sampled = getDataTable(context).sample(
+                context.getSource().getWorld().getRandom());
+        if (sampled.isEmpty()) {
+            throw NOTHING_TO_SAMPLE_EXCEPTION.create(id.toString());
+        }
+        return sampled.get();
+    }
+
+    private static int executeSample(CommandContext<ServerCommandSource> context)
+            throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        Identifier sampled = sample(context);
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.sample", sampled.toString(),
+                        id.toString()), false);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    // Commands can only return numbers, so data packs look up what was picked in another table
+    private static int executeSampleQuery(CommandContext<ServerCommandSource> context)
+            throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        Identifier valueTableId = IdentifierArgumentType.getIdentifier(context, "value_table_id");
+        Optional<DataTable> valueTable = DataTables.getOptional(valueTableId);
+        if (valueTable.isEmpty()) {
+            throw UNKNOWN_TABLE_EXCEPTION.create(valueTableId.toString());
+        }
+        Identifier sampled = sample(context);
+        int value = valueTable.get().query(sampled);
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.sample.query",
+                        sampled.toString(), id.toString(), value, valueTableId.toString()),
+                        false);
+        return value;
+    }
+
     private static int executeGetBlock(CommandContext<ServerCommandSource> context)
             throws CommandSyntaxException {
         Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
@@ -128,7 +371,7 @@ public class TableCommand {
         if (stackReference == StackReference.EMPTY) {
             throw SLOT_NOT_FOUND.create();
         }
-        int value = table.get().query(stackReference.get().getItem());
+        int value = table.get().query(stackReference.get());
         context.getSource()
                 .sendFeedback(
                         () -> Text.translatable("commands.table.get.item", value, id.toString()),
@@ -146,7 +389,7 @@ public class TableCommand {
 
         ItemStackArgument stackArgument = ItemStackArgumentType.getItemStackArgument(context,
                 "item");
-        int value = table.get().query(stackArgument.getItem());
+        int value = table.get().query(stackArgument.createStack(1, false));
         context.getSource()
                 .sendFeedback(
                         () -> Text.translatable("commands.table.get.item", value, id.toString()),
@@ -154,4 +397,200 @@ public class TableCommand {
         return value;
     }
 
+    private static DataTable getDataTable(CommandContext<ServerCommandSource> context)
+            throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        Optional<DataTable> table = DataTables.getOptional(id);
+        if (table.isEmpty()) {
+            throw UNKNOWN_TABLE_EXCEPTION.create(id.toString());
+        }
+        return table.get();
+    }
+
+    // Whole chunk sections inside the area are counted by palette entry, so each distinct block
+    // state in them is only queried once
+    private static int executeAggregateBlocks(CommandContext<ServerCommandSource> context,
+            Aggregate aggregate) throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        DataTable table = getDataTable(context);
+        ServerWorld world = context.getSource().getWorld();
+        BlockBox box = BlockBox.create(BlockPosArgumentType.getLoadedBlockPos(context, "from"),
+                BlockPosArgumentType.getLoadedBlockPos(context, "to"));
+        long volume = (long) box.getBlockCountX() * box.getBlockCountY() * box.getBlockCountZ();
+        int maxCount = world.getGameRules().getInt(GameRules.COMMAND_MODIFICATION_BLOCK_LIMIT);
+        if (volume > maxCount) {
+            throw TOO_MANY_BLOCKS_EXCEPTION.create(maxCount, volume);
+        }
+        if (!world.isRegionLoaded(new BlockPos(box.getMinX(), box.getMinY(), box.getMinZ()),
+                new BlockPos(box.getMaxX(), box.getMaxY(), box.getMaxZ()))) {
+            throw BlockPosArgumentType.UNLOADED_EXCEPTION.create();
+        }
+
+        Aggregator aggregator = new Aggregator(aggregate, table.getDefaultValue());
+        for (int chunkX = box.getMinX() >> 4; chunkX <= box.getMaxX() >> 4; ++chunkX) {
+            for (int chunkZ = box.getMinZ() >> 4; chunkZ <= box.getMaxZ() >> 4; ++chunkZ) {
+                WorldChunk chunk = world.getChunk(chunkX, chunkZ);
+                int minX = Math.max(box.getMinX(), chunkX << 4);
+                int maxX = Math.min(box.getMaxX(), (chunkX << 4) + 15);
+                int minZ = Math.max(box.getMinZ(), chunkZ << 4);
+                int maxZ = Math.min(box.getMaxZ(), (chunkZ << 4) + 15);
+                for (int sectionY = box.getMinY() >> 4; sectionY <= box.getMaxY() >> 4;
+                        ++sectionY) {
+                    ChunkSection section = chunk.getSection(chunk.sectionCoordToIndex(sectionY));
+                    int minY = Math.max(box.getMinY(), sectionY << 4);
+                    int maxY = Math.min(box.getMaxY(), (sectionY << 4) + 15);
+                    if (maxX - minX == 15 && maxY - minY == 15 && maxZ - minZ == 15) {
+                        section.getBlockStateContainer()
+                                .count((state, count) -> aggregator.add(table.query(state),
+                                        count));
+                        continue;
+                    }
+                    for (int y = minY; y <= maxY; ++y) {
+                        for (int z = minZ; z <= maxZ; ++z) {
+                            for (int x = minX; x <= maxX; ++x) {
+                                aggregator.add(
+                                        table.query(section.getBlockState(x & 15, y & 15, z & 15)),
+                                        1);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        int result = aggregator.getResult();
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.aggregate.blocks",
+                        aggregate.getName(), id.toString(), volume, result), false);
+        return result;
+    }
+
+    private static int executeAggregateEntities(CommandContext<ServerCommandSource> context,
+            Aggregate aggregate) throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        DataTable table = getDataTable(context);
+        Collection<? extends Entity> entities = EntityArgumentType.getOptionalEntities(context,
+                "targets");
+        Aggregator aggregator = new Aggregator(aggregate, table.getDefaultValue());
+        for (Entity entity : entities) {
+            aggregator.add(table.query(entity), 1);
+        }
+
+        int result = aggregator.getResult();
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.aggregate.entities",
+                        aggregate.getName(), id.toString(), entities.size(), result), false);
+        return result;
+    }
+
+    // Each item in a stack counts separately, so a stack of 64 adds its value 64 times to a sum
+    private static int executeAggregateInventory(CommandContext<ServerCommandSource> context,
+            Aggregate aggregate) throws CommandSyntaxException {
+        Identifier id = IdentifierArgumentType.getIdentifier(context, "data_table_id");
+        DataTable table = getDataTable(context);
+        Collection<? extends Entity> entities = EntityArgumentType.getOptionalEntities(context,
+                "targets");
+        Aggregator aggregator = new Aggregator(aggregate, table.getDefaultValue());
+        long items = 0L;
+        for (Entity entity : entities) {
+            for (ItemStack stack : getInventoryStacks(entity)) {
+                if (!stack.isEmpty()) {
+                    aggregator.add(table.query(stack), stack.getCount());
+                    items += stack.getCount();
+                }
+            }
+        }
+
+        int result = aggregator.getResult();
+        long itemCount = items;
+        context.getSource()
+                .sendFeedback(() -> Text.translatable("commands.table.aggregate.inventory",
+                        aggregate.getName(), id.toString(), itemCount, entities.size(), result),
+                        false);
+        return result;
+    }
+
+    // Players include their armor and offhand in their inventory. Other entities contribute their
+    // container, the inventory of mobs that pick up items, and their equipment.
+    private static List<ItemStack> getInventoryStacks(Entity entity) {
+        List<ItemStack> stacks = new ArrayList<>();
+        if (entity instanceof PlayerEntity player) {
+            addStacks(stacks, player.getInventory());
+            return stacks;
+        }
+        if (entity instanceof Inventory inventory) {
+            addStacks(stacks, inventory);
+        }
+        if (entity instanceof InventoryOwner owner) {
+            addStacks(stacks, owner.getInventory());
+        }
+        if (entity instanceof LivingEntity livingEntity) {
+            for (EquipmentSlot slot : EquipmentSlot.values()) {
+                stacks.add(livingEntity.getEquippedStack(slot));
+            }
+        }
+        return stacks;
+    }
+
+    private static void addStacks(List<ItemStack> stacks, Inventory inventory) {
+        for (int slot = 0; slot < inventory.size(); ++slot) {
+            stacks.add(inventory.getStack(slot));
+        }
+    }
+
+    private enum Aggregate {
+        SUM("sum"),
+        MAX("max"),
+        MIN("min"),
+        // Counts values that differ from the table's default value
+        COUNT("count");
+
+        private final String name;
+
+        Aggregate(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    // Values are summed as longs and clamped at the end, so the result fits /execute store
+    private static final class Aggregator {
+
+        private final Aggregate aggregate;
+        private final int defaultValue;
+        private long sum = 0L;
+        private long count = 0L;
+        private int max = Integer.MIN_VALUE;
+        private int min = Integer.MAX_VALUE;
+        private boolean empty = true;
+
+        Aggregator(Aggregate aggregate, int defaultValue) {
+            this.aggregate = aggregate;
+            this.defaultValue = defaultValue;
+        }
+
+        void add(int value, int times) {
+            sum += (long) value * times;
+            if (value != defaultValue) {
+                count += times;
+            }
+            max = Math.max(max, value);
+            min = Math.min(min, value);
+            empty = false;
+        }
+
+        // Max and min of nothing are 0
+        int getResult() {
+            long result = switch (aggregate) {
+                case SUM -> sum;
+                case MAX -> empty ? 0 : max;
+                case MIN -> empty ? 0 : min;
+                case COUNT -> count;
+            };
+            return Math.clamp(result, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+    }
 }
@@ -0,0 +1,307 @@
+package io.github.drakonkinst.datatables;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import java.util.ArrayList;
+import java.util.List;
+
+// An integer expression over named variables, such as "max(a, b) * 2 + c", used to compute
+// derived tables. Supports + - * / %, unary minus, parentheses, and the functions min, max,
+// clamp and abs. Division and remainder round towards negative infinity like scoreboard
+// operations, and give 0 when dividing by 0. Intermediate values are longs, and the result is
+// clamped to the range of an int. Intermediate values saturate instead of overflowing, so the
+// clamp holds for any input.
+public final class TableExpression {
+
+    // Bounds how deeply the parser and the evaluated tree can recurse
+    private static final int MAX_LENGTH = 1024;
+    private static final int MAX_DEPTH = 64;
+
+    public static final Codec<TableExpression> CODEC = Codec.STRING.comapFlatMap(
+            TableExpression::parse, TableExpression::getSource);
+
+    private final String source;
+    // In order of first appearance, which is the order values are passed to evaluate()
+    private final List<String> variables;
+    private final Node root;
+
+    private TableExpression(String source, List<String> variables, Node root) {
+        this.source = source;
+        this.variables = List.copyOf(variables);
+        this.root = root;
+    }
+
+    public static DataResult<TableExpression> parse(String source) {
+        if (source.length() > MAX_LENGTH) {
+            return DataResult.error(() -> "Expression is longer than " + MAX_LENGTH
+                    + " characters: " + source);
+        }
+        try {
+            Parser parser = new Parser(source);
+            Node root = parser.parseExpression();
+            parser.skipWhitespace();
+            if (parser.index < source.length()) {
+                throw parser.error("Unexpected '" + source.charAt(parser.index) + "'");
+            }
+            return DataResult.success(new TableExpression(source, parser.variables, root));
+        } catch (IllegalArgumentException e) {
+            return DataResult.error(e::getMessage);
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    public int evaluate(int[] values) {
+        return Math.clamp(root.evaluate(values), Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static long add(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    private static long subtract(long a, long b) {
+        try {
+            return Math.subtractExact(a, b);
+        } catch (ArithmeticException e) {
+            return a < b ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    private static long multiply(long a, long b) {
+        try {
+            return Math.multiplyExact(a, b);
+        } catch (ArithmeticException e) {
+            return (a < 0) == (b < 0) ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+    }
+
+    private static long negate(long a) {
+        return a == Long.MIN_VALUE ? Long.MAX_VALUE : -a;
+    }
+
+    @FunctionalInterface
+    private interface Node {
+
+        long evaluate(int[] values);
+    }
+
+    private static final class Parser {
+
+        private final String source;
+        private final List<String> variables = new ArrayList<>();
+        private int index = 0;
+        private int depth = 0;
+
+        private Parser(String source) {
+            this.source = source;
+        }
+
+        private Node parseExpression() {
+            Node node = parseTerm();
+            while (true) {
+                if (accept('+')) {
+                    Node left = node;
+                    Node right = parseTerm();
+                    node = values -> add(left.evaluate(values), right.evaluate(values));
+                } else if (accept('-')) {
+                    Node left = node;
+                    Node right = parseTerm();
+                    node = values -> subtract(left.evaluate(values), right.evaluate(values));
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node parseTerm() {
+            Node node = parseUnary();
+            while (true) {
+                if (accept('*')) {
+                    Node left = node;
+                    Node right = parseUnary();
+                    node = values -> multiply(left.evaluate(values), right.evaluate(values));
+                } else if (accept('/')) {
+                    Node left = node;
+                    Node right = parseUnary();
+                    node = values -> {
+                        long divisor = right.evaluate(values);
+                        if (divisor == 0) {
+                            return 0;
+                        }
+                        // Long.MIN_VALUE / -1 is the only quotient that overflows
+                        return divisor == -1 ? negate(left.evaluate(values))
+                                : Math.floorDiv(left.evaluate(values), divisor);
+                    };
+                } else if (accept('%')) {
+                    Node left = node;
+                    Node right = parseUnary();
+                    node = values -> {
+                        long divisor = right.evaluate(values);
+                        return divisor == 0 ? 0 : Math.floorMod(left.evaluate(values), divisor);
+                    };
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node parseUnary() {
+            if (accept('-')) {
+                enter();
+                Node operand = parseUnary();
+                exit();
+                return values -> negate(operand.evaluate(values));
+            }
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() {
+            if (accept('(')) {
+                enter();
+                Node node = parseExpression();
+                expect(')');
+                exit();
+                return node;
+            }
+            skipWhitespace();
+            int start = index;
+            if (index < source.length() && Character.isDigit(source.charAt(index))) {
+                while (index < source.length() && Character.isDigit(source.charAt(index))) {
+                    ++index;
+                }
+                long constant = parseConstant(source.substring(start, index));
+                return values -> constant;
+            }
+            while (index < source.length() && isNameChar(source.charAt(index))) {
+                ++index;
+            }
+            if (start == index) {
+                throw error(index < source.length() ? "Unexpected '" + source.charAt(index) + "'"
+                        : "Unexpected end of expression");
+            }
+            String name = source.substring(start, index);
+            if (accept('(')) {
+                return parseFunction(name);
+            }
+            int variable = variables.indexOf(name);
+            if (variable < 0) {
+                variable = variables.size();
+                variables.add(name);
+            }
+            int variableIndex = variable;
+            return values -> values[variableIndex];
+        }
+
+        private long parseConstant(String digits) {
+            try {
+                return Integer.parseInt(digits);
+            } catch (NumberFormatException e) {
+                throw error("Number is too large");
+            }
+        }
+
+        private Node parseFunction(String name) {
+            enter();
+            List<Node> args = new ArrayList<>();
+            do {
+                args.add(parseExpression());
+            } while (accept(','));
+            expect(')');
+            exit();
+
+            Node[] nodes = args.toArray(Node[]::new);
+            return switch (name) {
+                case "min" -> values -> {
+                    long min = Long.MAX_VALUE;
+                    for (Node node : nodes) {
+                        min = Math.min(min, node.evaluate(values));
+                    }
+                    return min;
+                };
+                case "max" -> values -> {
+                    long max = Long.MIN_VALUE;
+                    for (Node node : nodes) {
+                        max = Math.max(max, node.evaluate(values));
+                    }
+                    return max;
+                };
+                case "clamp" -> {
+                    checkArgCount(name, nodes, 3);
+                    yield values -> Math.min(
+                            Math.max(nodes[0].evaluate(values), nodes[1].evaluate(values)),
+                            nodes[2].evaluate(values));
+                }
+                case "abs" -> {
+                    checkArgCount(name, nodes, 1);
+                    yield values -> {
+                        long value = nodes[0].evaluate(values);
+                        return value < 0 ? negate(value) : value;
+                    };
+                }
+                default -> throw error("Unknown function " + name);
+            };
+        }
+
+        private void checkArgCount(String name, Node[] nodes, int count) {
+            if (nodes.length != count) {
+                throw error(name + " takes " + count + " argument(s) but was given "
+                        + nodes.length);
+            }
+        }
+
+        private void enter() {
+            if (++depth > MAX_DEPTH) {
+                throw error("Expression is nested more than " + MAX_DEPTH + " levels deep");
+            }
+        }
+
+        private void exit() {
+            --depth;
+        }
+
+        private static boolean isNameChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+        }
+
+        private boolean accept(char c) {
+            skipWhitespace();
+            if (index < source.length() && source.charAt(index) == c) {
+                ++index;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (index < source.length() && Character.isWhitespace(source.charAt(index))) {
+                ++index;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(
+                    message + " at position " + index + " in expression: " + source);
+        }
+    }
+}